@@ -0,0 +1,30 @@
+package cs107.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks. Runs every benchmark of this package
+ * with the GC profiler attached, so the allocation rate is reported
+ * next to MB/s and megapixels/s. Any JMH command line option
+ * (e.g. "-p image=beach" or a benchmark regex) can be given to narrow the run.
+ * @apiNote Run it from the root of the repository so that "references/" is found
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner(){}
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        var commandLine = new CommandLineOptions(args);
+        var builder = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+        if(commandLine.getIncludes().isEmpty()) {
+            builder.include(BenchmarkRunner.class.getPackageName() + ".*");
+        }
+        new Runner(builder.build()).run();
+    }
+
+}
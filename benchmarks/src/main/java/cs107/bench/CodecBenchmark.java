@@ -0,0 +1,91 @@
+package cs107.bench;
+
+import cs107.Helper;
+import cs107.QOIDecoder;
+import cs107.QOIDecoderContext;
+import cs107.QOIEncoder;
+import cs107.QOIEncoderContext;
+import cs107.QOIParallelDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the "Quite Ok Image" encoder and decoder
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    private byte[] encoded;
+
+    private int[] decoded;
+
+    private final QOIEncoderContext encoder = new QOIEncoderContext(Integer.MAX_VALUE);
+
+    private final QOIDecoderContext decoder = new QOIDecoderContext(Integer.MAX_VALUE);
+
+    @Setup
+    public void allocate(Corpus corpus){
+        encoded = new byte[QOIEncoder.maxFileSize(corpus.width, corpus.height)];
+        decoded = new int[corpus.width * corpus.height];
+    }
+
+    @Benchmark
+    public byte[] qoiFile(Corpus corpus, Throughput throughput){
+        throughput.add(corpus);
+        return QOIEncoder.qoiFile(corpus.decoded);
+    }
+
+    @Benchmark
+    public int encodeFile(Corpus corpus, Throughput throughput){
+        throughput.add(corpus);
+        return QOIEncoder.encodeFile(corpus.pixels, corpus.width, corpus.height,
+                corpus.decoded.channels(), corpus.decoded.color_space(), encoded, 0);
+    }
+
+    @Benchmark
+    public int encodeContext(Corpus corpus, Throughput throughput){
+        throughput.add(corpus);
+        return encoder.encode(corpus.pixels, corpus.width, corpus.height,
+                corpus.decoded.channels(), corpus.decoded.color_space());
+    }
+
+    @Benchmark
+    public Helper.Image decodeQoiFile(Corpus corpus, Throughput throughput){
+        throughput.add(corpus);
+        return QOIDecoder.decodeQoiFile(corpus.qoi);
+    }
+
+    @Benchmark
+    public int[] decodeInto(Corpus corpus, Throughput throughput){
+        throughput.add(corpus);
+        return QOIDecoder.decodeInto(corpus.qoi, decoded);
+    }
+
+    @Benchmark
+    public int[] decodeContext(Corpus corpus, Throughput throughput){
+        throughput.add(corpus);
+        return decoder.decode(corpus.qoi);
+    }
+
+    @Benchmark
+    public int[] decodeParallel(Corpus corpus, Throughput throughput){
+        throughput.add(corpus);
+        return QOIParallelDecoder.decodeInto(corpus.qoi, decoded);
+    }
+
+}
@@ -0,0 +1,97 @@
+package cs107.bench;
+
+import cs107.ArrayUtils;
+import cs107.PixelConversion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the pixel format conversions of ArrayUtils and of the PixelConversion kernels
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    @Benchmark
+    public byte[][] imageToChannels(Corpus corpus, Throughput throughput){
+        throughput.add(corpus);
+        return ArrayUtils.imageToChannels(corpus.decoded.data());
+    }
+
+    @Benchmark
+    public int[][] channelsToImage(Corpus corpus, Throughput throughput){
+        throughput.add(corpus);
+        return ArrayUtils.channelsToImage(corpus.channels, corpus.height, corpus.width);
+    }
+
+    /**
+     * Destination buffers of the kernels, one set per thread
+     */
+    @State(Scope.Thread)
+    public static class Buffers {
+
+        public byte[] rgba;
+        public byte[] rgb;
+        public int[] argb;
+
+        @Setup
+        public void allocate(Corpus corpus){
+            int count = corpus.pixels.length;
+            rgba = new byte[count * 4];
+            rgb = new byte[count * 3];
+            argb = new int[count];
+            PixelConversion.argbToRgba(corpus.pixels, 0, rgba, 0, count);
+            PixelConversion.argbToRgb(corpus.pixels, 0, rgb, 0, count);
+        }
+    }
+
+    @Benchmark
+    public byte[] argbToRgba(Corpus corpus, Buffers buffers, Throughput throughput){
+        throughput.add(corpus);
+        PixelConversion.argbToRgba(corpus.pixels, 0, buffers.rgba, 0, corpus.pixels.length);
+        return buffers.rgba;
+    }
+
+    @Benchmark
+    public int[] rgbaToArgb(Corpus corpus, Buffers buffers, Throughput throughput){
+        throughput.add(corpus);
+        PixelConversion.rgbaToArgb(buffers.rgba, 0, buffers.argb, 0, buffers.argb.length);
+        return buffers.argb;
+    }
+
+    @Benchmark
+    public byte[] argbToRgb(Corpus corpus, Buffers buffers, Throughput throughput){
+        throughput.add(corpus);
+        PixelConversion.argbToRgb(corpus.pixels, 0, buffers.rgb, 0, corpus.pixels.length);
+        return buffers.rgb;
+    }
+
+    @Benchmark
+    public int[] rgbToArgb(Corpus corpus, Buffers buffers, Throughput throughput){
+        throughput.add(corpus);
+        PixelConversion.rgbToArgb(buffers.rgb, 0, buffers.argb, 0, buffers.argb.length);
+        return buffers.argb;
+    }
+
+    @Benchmark
+    public int[] premultiply(Corpus corpus, Buffers buffers, Throughput throughput){
+        throughput.add(corpus);
+        System.arraycopy(corpus.pixels, 0, buffers.argb, 0, buffers.argb.length);
+        PixelConversion.premultiply(buffers.argb, 0, buffers.argb.length);
+        return buffers.argb;
+    }
+
+}
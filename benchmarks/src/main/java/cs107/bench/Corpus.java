@@ -0,0 +1,69 @@
+package cs107.bench;
+
+import cs107.ArrayUtils;
+import cs107.Helper;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+
+/**
+ * Images of the "references/" folder used by the benchmarks, in every
+ * representation the codec works with. Photos (kodim10, kodim23, beach, wikipedia_008)
+ * and synthetic content (dice, testcard) are separate parameters so that
+ * regressions on either kind show up on their own.
+ * @apiNote The folder can be changed with the "qoi.references" system property
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+    @Param({"kodim10", "kodim23", "beach", "wikipedia_008", "dice", "testcard"})
+    public String image;
+
+    /** Path to the "PNG" version of the image */
+    public String pngPath;
+
+    /** Decoded image, as returned by Helper::readImage */
+    public Helper.Image decoded;
+
+    /** ARGB pixels, row after row */
+    public int[] pixels;
+
+    /** Pixels formatted as in ArrayUtils::imageToChannels */
+    public byte[][] channels;
+
+    /** Content of the "QOI" version of the image */
+    public byte[] qoi;
+
+    public int width;
+
+    public int height;
+
+    /** Size of the raw RGBA pixels in megabytes, used to report MB/s */
+    public double megabytes;
+
+    /** Number of pixels in millions, used to report megapixels/s */
+    public double megapixels;
+
+    @Setup
+    public void load(){
+        var folder = System.getProperty("qoi.references", "references");
+        pngPath = folder + File.separator + image + ".png";
+        decoded = Helper.readImage(pngPath);
+        qoi = Helper.read(folder + File.separator + image + ".qoi");
+
+        height = decoded.data().length;
+        width = decoded.data()[0].length;
+        pixels = new int[width * height];
+        for(int i = 0; i < height; ++i) {
+            System.arraycopy(decoded.data()[i], 0, pixels, i * width, width);
+        }
+        channels = ArrayUtils.imageToChannels(decoded.data());
+
+        megapixels = (double) width * height / 1e6;
+        megabytes = megapixels * 4;
+    }
+
+}
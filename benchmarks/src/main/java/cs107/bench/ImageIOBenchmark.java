@@ -0,0 +1,49 @@
+package cs107.bench;
+
+import cs107.Helper;
+import cs107.PixelBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Throughput of the "PNG" ingestion and writing paths of Helper
+ * @apiNote The images are written to memory, the disk is left out of the measure
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ImageIOBenchmark {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Benchmark
+    public Helper.Image readImage(Corpus corpus, Throughput throughput){
+        throughput.add(corpus);
+        return Helper.readImage(corpus.pngPath);
+    }
+
+    @Benchmark
+    public int writeImage(Corpus corpus, Throughput throughput) throws IOException {
+        throughput.add(corpus);
+        output.reset();
+        // Same path as Helper::writeImage, without the file
+        Helper.writePng(PixelBuffer.fromImage(corpus.decoded), Deflater.DEFAULT_COMPRESSION, output);
+        return output.size();
+    }
+
+}
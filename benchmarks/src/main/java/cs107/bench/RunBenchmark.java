@@ -0,0 +1,122 @@
+package cs107.bench;
+
+import cs107.Helper;
+import cs107.QOIAnalytics;
+import cs107.QOIDecoder;
+import cs107.QOIEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the encoder, the decoder and the analytics on run-heavy images: the synthetic references with large
+ * flat areas and a generated 1920x1080 "screenshot" made of solid rectangles and sparse text-like noise
+ * @apiNote The folder of the references can be changed with the "qoi.references" system property
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunBenchmark {
+
+    @Param({"screenshot", "qoi_op_run", "EPFL", "qoi_logo", "dice", "testcard"})
+    public String image;
+
+    private int width;
+    private int height;
+    private byte channels;
+    private int[] pixels;
+    private byte[] encoded;
+    private byte[] qoi;
+    private int[] decoded;
+
+    @Setup
+    public void load(){
+        if(image.equals("screenshot")) {
+            width = 1920;
+            height = 1080;
+            channels = 3;
+            pixels = screenshot(width, height);
+        } else {
+            var folder = System.getProperty("qoi.references", "references");
+            var decoded = Helper.readPixels(folder + File.separator + image + ".png");
+            width = decoded.width();
+            height = decoded.height();
+            channels = decoded.channels();
+            pixels = decoded.array();
+        }
+        encoded = new byte[QOIEncoder.maxFileSize(width, height)];
+        qoi = Arrays.copyOf(encoded, QOIEncoder.encodeFile(pixels, width, height, channels, (byte) 0, encoded, 0));
+        decoded = new int[width * height];
+    }
+
+    @Benchmark
+    public int encodeFile(Throughput throughput){
+        throughput.add(width, height);
+        return QOIEncoder.encodeFile(pixels, width, height, channels, (byte) 0, encoded, 0);
+    }
+
+    @Benchmark
+    public int[] decodeInto(Throughput throughput){
+        throughput.add(width, height);
+        return QOIDecoder.decodeInto(qoi, decoded);
+    }
+
+    @Benchmark
+    public QOIAnalytics.Analysis analyze(Throughput throughput){
+        throughput.add(width, height);
+        return QOIAnalytics.analyze(qoi);
+    }
+
+    // What QOIAnalytics::analyze replaces: decode, then scan the pixels for the histogram
+    @Benchmark
+    public long[][] decodeThenScan(Throughput throughput){
+        throughput.add(width, height);
+        QOIDecoder.decodeInto(qoi, decoded);
+        long[][] histogram = new long[4][256];
+        for(int pixel : decoded) {
+            ++histogram[0][(pixel >>> 16) & 0xFF];
+            ++histogram[1][(pixel >>> 8) & 0xFF];
+            ++histogram[2][pixel & 0xFF];
+            ++histogram[3][pixel >>> 24];
+        }
+        return histogram;
+    }
+
+    // Windows of solid colors with a few rows of "text" in each
+    private static int[] screenshot(int width, int height){
+        var random = new Random(107);
+        var pixels = new int[width * height];
+        Arrays.fill(pixels, 0xFF_20_20_20);
+        for(int w = 0; w < 12; ++w) {
+            int x0 = random.nextInt(width - 400);
+            int y0 = random.nextInt(height - 300);
+            int color = 0xFF_00_00_00 | random.nextInt(0x1_00_00_00);
+            for(int y = y0; y < y0 + 300; ++y) {
+                Arrays.fill(pixels, y * width + x0, y * width + x0 + 400, color);
+                if((y - y0) % 16 < 10 && (y - y0) > 20) {
+                    for(int x = x0 + 10; x < x0 + 390; x += 3 + random.nextInt(8)) {
+                        pixels[y * width + x] = 0xFF_00_00_00;
+                    }
+                }
+            }
+        }
+        return pixels;
+    }
+
+}
@@ -0,0 +1,47 @@
+package cs107.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary counters reported next to the score of every benchmark.
+ * As their values grow with every operation, JMH reports them as rates:
+ * with a throughput mode in seconds they read as MB/s and megapixels/s.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+
+    public double megabytes;
+
+    public double megapixels;
+
+    @Setup(Level.Iteration)
+    public void reset(){
+        megabytes = 0;
+        megapixels = 0;
+    }
+
+    /**
+     * Account for one processed image
+     * @param corpus (Corpus) - The processed image
+     */
+    public void add(Corpus corpus){
+        add(corpus.width, corpus.height);
+    }
+
+    /**
+     * Account for one processed image
+     * @param width (int) - Width of the processed image
+     * @param height (int) - Height of the processed image
+     */
+    public void add(int width, int height){
+        double pixels = (double) width * height / 1e6;
+        megabytes += pixels * 4;
+        megapixels += pixels;
+    }
+
+}
@@ -1,5 +1,7 @@
 package cs107;
 
+import java.nio.ByteBuffer;
+
 /**
  * Utility class to manipulate arrays.
  * @apiNote First Task of the 2022 Mini Project
@@ -139,6 +141,66 @@ public final class ArrayUtils {
         return a;
     }
 
+    /**
+     * Read a "Big Endian" integer in place, without extracting its 4 bytes
+     * @param content (byte[]) - Array holding the integer
+     * @param offset (int) - Index of the first byte of the integer
+     * @return (int) - The integer
+     */
+    static int readInt(byte[] content, int offset){
+        return ((content[offset] & 0xFF) << 24) | ((content[offset + 1] & 0xFF) << 16)
+                | ((content[offset + 2] & 0xFF) << 8) | (content[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Read a "Big Endian" integer in place, whatever the byte order of the buffer
+     * @param content (ByteBuffer) - Buffer holding the integer
+     * @param offset (int) - Absolute index of the first byte of the integer
+     * @return (int) - The integer
+     */
+    static int readInt(ByteBuffer content, int offset){
+        return ((content.get(offset) & 0xFF) << 24) | ((content.get(offset + 1) & 0xFF) << 16)
+                | ((content.get(offset + 2) & 0xFF) << 8) | (content.get(offset + 3) & 0xFF);
+    }
+
+    /**
+     * Write a "Big Endian" integer in place, without allocating its 4 bytes
+     * @param value (int) - The integer
+     * @param output (byte[]) - Array where to write the integer
+     * @param position (int) - Index of the first byte to write
+     * @return (int) - Index right after the integer
+     */
+    static int writeInt(int value, byte[] output, int position){
+        output[position++] = (byte)(value >>> 24);
+        output[position++] = (byte)(value >>> 16);
+        output[position++] = (byte)(value >>> 8);
+        output[position++] = (byte) value;
+
+        return position;
+    }
+
+    /**
+     * Read a "Big Endian" long in place, as two integers
+     * @param content (byte[]) - Array holding the long
+     * @param offset (int) - Index of the first byte of the long
+     * @return (long) - The long
+     */
+    static long readLong(byte[] content, int offset){
+        return ((long) readInt(content, offset) << 32) | (readInt(content, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Write a "Big Endian" long in place, as two integers
+     * @param value (long) - The long
+     * @param output (byte[]) - Array where to write the long
+     * @param position (int) - Index of the first byte to write
+     * @return (int) - Index right after the long
+     */
+    static int writeLong(long value, byte[] output, int position){
+        position = writeInt((int) (value >>> 32), output, position);
+        return writeInt((int) value, output, position);
+    }
+
     // ==================================================================================
     // ========================== ARRAY CONCATENATION METHODS ===========================
     // ==================================================================================
@@ -277,17 +339,13 @@ public final class ArrayUtils {
             assert line.length == n;
         }
 
-        byte[][] output = new byte[n*m][4];
+        byte[][] output = new byte[n*m][];
 
         int k = 0;
         for(int i = 0; i < m; ++i) {
             for(int j = 0; j < n; ++j) {
-                byte[] temp = fromInt(input[i][j]);
-                for(int v = 0; v < 3; ++v) {
-                    output[k][v] = temp[v + 1];
-                }
-                output[k][3] = temp[0];
-                ++k;
+                int pixel = input[i][j];
+                output[k++] = new byte[]{(byte) (pixel >>> 16), (byte) (pixel >>> 8), (byte) pixel, (byte) (pixel >>> 24)};
             }
         }
 
@@ -312,39 +370,15 @@ public final class ArrayUtils {
         assert input != null;
         assert input.length == width*height;
 
-        byte[][] copy = new byte[input.length][input[0].length];
-        for(int i = 0; i < input.length; ++i) {
-            assert  input[i] != null;
-            assert input[i].length == 4;
-
-            for(int j = 0; j < input[i].length; ++j)
-            {
-                copy[i][j] = input[i][j];
-            }
-        }
-
         int[][] output = new int[height][width];
 
-        int colonne = 0;
-        int ligne = 0;
-
-        for(int i = 0; i<height*width; ++i){
-
-            byte tmp = input[i][3];
-
-            for(int v =3; v>0; --v){
-                copy[i][v] = copy[i][v-1];
-            }
-            copy[i][0] = tmp;
-
-            int val = toInt(copy[i]);
-            output[ligne][colonne] = val;
-
-            ++colonne;
-
-            if(colonne % width == 0){
-                ++ligne;
-                colonne = 0;
+        int k = 0;
+        for(int i = 0; i < height; ++i) {
+            for(int j = 0; j < width; ++j) {
+                byte[] pixel = input[k++];
+                assert pixel != null;
+                assert pixel.length == 4;
+                output[i][j] = (pixel[3] & 0xFF) << 24 | (pixel[0] & 0xFF) << 16 | (pixel[1] & 0xFF) << 8 | (pixel[2] & 0xFF);
             }
         }
 
@@ -1,6 +1,20 @@
 package cs107;
 
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Utility class used to simulate the Unix command "diff"
@@ -10,6 +24,22 @@ import java.util.Arrays;
  */
 public final class Diff {
 
+    /**
+     * Number of bytes of both files compared by a single task, mapped at once
+     */
+    public static final int WINDOW_SIZE = 1 << 26;
+
+    /**
+     * Largest number of differing ranges printed by Diff::diff(String, String)
+     */
+    public static final int MAX_RANGES = 64;
+
+    // Two differing ranges separated by fewer equal bytes are reported as one
+    private static final int GAP = 8;
+
+    // Number of bytes of each file printed for a range
+    private static final int CONTEXT = 16;
+
     // ============================================================================================
     // ======================================= DIFF API ===========================================
     // ============================================================================================
@@ -36,8 +66,10 @@ public final class Diff {
     }
 
     /**
-     * Compare the content of 2 files and print in the Terminal the difference
-     * between them
+     * Compare the content of 2 files and print in the Terminal the ranges of bytes
+     * where they differ, with the first bytes of each range.
+     * The files are memory mapped and compared in parallel (see Diff::compareFiles),
+     * so they can be larger than the heap
      * @param file_1 (String) - Path of the first file
      * @param file_2 (String) - Path of the second file
      * @throws AssertionError if one of the paths is null
@@ -46,10 +78,174 @@ public final class Diff {
         assert file_1 != null;
         assert file_2 != null;
 
-        var b1 = Helper.read(file_1);
-        var b2 = Helper.read(file_2);
-        showHeader(file_1, file_2, b1, b2);
-        diff(b1, b2);
+        try(var c1 = FileChannel.open(Path.of(file_1), StandardOpenOption.READ);
+            var c2 = FileChannel.open(Path.of(file_2), StandardOpenOption.READ)){
+            var diff = compare(c1, c2, MAX_RANGES, ForkJoinPool.commonPool());
+            showHeader(file_1, file_2, diff.size1(), diff.size2());
+            if(diff.same()){
+                showSameFileMessage();
+            } else {
+                if(diff.size1() != diff.size2()){
+                    sizeWarning(diff.size1(), diff.size2());
+                }
+                showRanges(c1, c2, diff);
+            }
+        } catch (IOException e){
+            Helper.fail("An error occurred while trying to read from : \"%s\" or \"%s\"%n", file_1, file_2);
+        }
+
+        showEnd();
+    }
+
+    /**
+     * Range of bytes where two files differ
+     * @param offset (long) - Index of the first differing byte
+     * @param length (long) - Number of bytes, equal bytes shorter than 8 between two differences included
+     */
+    public record ByteRange(long offset, long length) {}
+
+    /**
+     * Result of the comparison of the bytes of two files
+     * @param size1 (long) - Size of the first file
+     * @param size2 (long) - Size of the second file
+     * @param rangeCount (long) - Number of differing ranges in the common part of the files
+     * @param ranges (List<ByteRange>) - The first differing ranges, in order, at most the requested number
+     */
+    public record ByteDiff(long size1, long size2, long rangeCount, List<ByteRange> ranges) {
+
+        /**
+         * Tells if the two files have the same content
+         * @return (boolean) - true if they have the same size and no range differs
+         */
+        public boolean same(){
+            return size1 == size2 && rangeCount == 0;
+        }
+    }
+
+    /**
+     * Compare the bytes of two files without reading them on the heap. The common part
+     * of the files is split in windows of WINDOW_SIZE bytes that are memory mapped and
+     * compared in parallel with ByteBuffer::mismatch, which the JDK vectorizes, so identical
+     * files are checked at the speed of the disk and the memory used doesn't depend on their size
+     * @param file_1 (Path) - First file
+     * @param file_2 (Path) - Second file
+     * @param maxRanges (int) - Largest number of ranges to return, they are all counted anyway
+     * @param pool (ForkJoinPool) - Pool comparing the windows
+     * @return (ByteDiff) - Where the files differ
+     * @throws IOException if one of the files cannot be read
+     * @throws AssertionError if one of the parameters is null or maxRanges is negative
+     */
+    public static ByteDiff compareFiles(Path file_1, Path file_2, int maxRanges, ForkJoinPool pool) throws IOException {
+        assert file_1 != null;
+        assert file_2 != null;
+        try(var c1 = FileChannel.open(file_1, StandardOpenOption.READ);
+            var c2 = FileChannel.open(file_2, StandardOpenOption.READ)){
+            return compare(c1, c2, maxRanges, pool);
+        }
+    }
+
+    /**
+     * Compare the bytes of two files on the common ForkJoinPool
+     * @param file_1 (Path) - First file
+     * @param file_2 (Path) - Second file
+     * @param maxRanges (int) - Largest number of ranges to return, they are all counted anyway
+     * @return (ByteDiff) - Where the files differ
+     * @throws IOException if one of the files cannot be read
+     * @throws AssertionError if one of the paths is null or maxRanges is negative
+     */
+    public static ByteDiff compareFiles(Path file_1, Path file_2, int maxRanges) throws IOException {
+        return compareFiles(file_1, file_2, maxRanges, ForkJoinPool.commonPool());
+    }
+
+    // ============================================================================================
+    // ==================================== PIXEL DIFF API ========================================
+    // ============================================================================================
+
+    /**
+     * Result of the comparison of the pixels of two images of the same size
+     * @param width (int) - Width of the images
+     * @param height (int) - Height of the images
+     * @param mismatches (long) - Number of pixels that differ
+     * @param firstX (int) - Column of the first pixel that differs, -1 if there is none
+     * @param firstY (int) - Row of the first pixel that differs, -1 if there is none
+     * @param first1 (int) - ARGB value of the first pixel that differs in the first image
+     * @param first2 (int) - ARGB value of the first pixel that differs in the second image
+     * @param maxDelta (int[]) - Largest absolute difference of the red, green, blue and alpha channels, in this order
+     * @param bounds (Rectangle) - Smallest rectangle holding all the pixels that differ, empty if there is none
+     */
+    public record PixelDiff(int width, int height, long mismatches, int firstX, int firstY, int first1, int first2,
+                            int[] maxDelta, Rectangle bounds) {
+
+        /**
+         * Tells if the two images have the same pixels
+         * @return (boolean) - true if no pixel differs
+         */
+        public boolean same(){
+            return mismatches == 0;
+        }
+    }
+
+    /**
+     * Compare the pixels of two "Quite Ok Image" files and print in the Terminal
+     * where they differ. Files with the same pixels are reported as the same even
+     * if their chunks are different
+     * @param file_1 (String) - Path of the first file
+     * @param file_2 (String) - Path of the second file
+     * @throws AssertionError if one of the paths is null or one of the files is corrupted
+     */
+    public static void diffPixels(String file_1, String file_2){
+        assert file_1 != null;
+        assert file_2 != null;
+
+        try(var d1 = new QOIStreamDecoder(new FileInputStream(file_1));
+            var d2 = new QOIStreamDecoder(new FileInputStream(file_2))){
+            showPixelHeader(file_1, file_2, d1, d2);
+            if(d1.width() != d2.width() || d1.height() != d2.height()){
+                System.out.println("== WARNING : The two images have different sizes, their pixels cannot be compared");
+            } else {
+                showPixelDiff(comparePixels(d1, d2));
+            }
+        } catch (IOException e){
+            Helper.fail("An error occurred while trying to read from : \"%s\" or \"%s\"%n", file_1, file_2);
+        }
+
+        showEnd();
+    }
+
+    /**
+     * Compare the pixels of two "Quite Ok Image" files held in memory
+     * @param content_1 (byte[]) - Content of the first file
+     * @param content_2 (byte[]) - Content of the second file
+     * @return (PixelDiff) - Where the pixels differ
+     * @throws AssertionError if one of the contents is null or corrupted, or the images have different sizes
+     */
+    public static PixelDiff comparePixels(byte[] content_1, byte[] content_2){
+        assert content_1 != null;
+        assert content_2 != null;
+        try {
+            return comparePixels(new ByteArrayInputStream(content_1), new ByteArrayInputStream(content_2));
+        } catch (IOException e) {
+            return Helper.fail("The file ends too early");
+        }
+    }
+
+    /**
+     * Compare the pixels of two "Quite Ok Image" streams. The streams are decoded in lockstep,
+     * a chunk at a time, so the memory used doesn't depend on the size of the images, and a run
+     * of the same pixel on both sides is skipped in constant time
+     * @param input_1 (InputStream) - Stream of the first file, not closed
+     * @param input_2 (InputStream) - Stream of the second file, not closed
+     * @return (PixelDiff) - Where the pixels differ
+     * @throws IOException if one of the streams fails or ends too early
+     * @throws AssertionError if one of the streams is null, a file is corrupted or the images have different sizes
+     */
+    public static PixelDiff comparePixels(InputStream input_1, InputStream input_2) throws IOException {
+        assert input_1 != null;
+        assert input_2 != null;
+        var d1 = new QOIStreamDecoder(input_1);
+        var d2 = new QOIStreamDecoder(input_2);
+        assert d1.width() == d2.width() && d1.height() == d2.height();
+        return comparePixels(d1, d2);
     }
 
     // ============================================================================================
@@ -58,19 +254,146 @@ public final class Diff {
     // Hide default constructor
     private Diff(){}
 
-    private static void showHeader(String file_1, String file_2, byte[] stream_f1, byte[] stream_f2){
+    private static void showHeader(String file_1, String file_2, long size_1, long size_2){
         System.out.println("========================================== DIFF ==========================================");
-        System.out.printf("== File 1 : '%s', size = %d bytes %n", file_1, stream_f1.length);
-        System.out.printf("== File 2 : '%s', size = %d bytes %n", file_2, stream_f2.length);
+        System.out.printf("== File 1 : '%s', size = %d bytes %n", file_1, size_1);
+        System.out.printf("== File 2 : '%s', size = %d bytes %n", file_2, size_2);
         System.out.println("==========================================================================================");
     }
 
     private static int sizeWarning(int size_1, int size_2){
-        var min = Integer.min(size_1, size_2);
+        return (int) sizeWarning((long) size_1, size_2);
+    }
+
+    private static long sizeWarning(long size_1, long size_2){
+        var min = Long.min(size_1, size_2);
         System.out.printf("== WARNING : The two input have different sizes, we will only check the %d first bytes%n", min);
         return min;
     }
 
+    // Print every range with its first bytes in both files
+    private static void showRanges(FileChannel c1, FileChannel c2, ByteDiff diff) throws IOException {
+        for(var range : diff.ranges()){
+            int length = (int) Math.min(CONTEXT, range.length());
+            var b1 = ByteBuffer.allocate(length);
+            var b2 = ByteBuffer.allocate(length);
+            c1.read(b1, range.offset());
+            c2.read(b2, range.offset());
+            System.out.printf("[%06X] %d bytes ~ %s~ %s%n", range.offset(), range.length(), hex(b1.flip()), hex(b2.flip()));
+        }
+        if(diff.rangeCount() > diff.ranges().size()){
+            System.out.printf("== ... and %d more ranges%n", diff.rangeCount() - diff.ranges().size());
+        }
+    }
+
+    private static String hex(ByteBuffer bytes){
+        var text = new StringBuilder();
+        while(bytes.hasRemaining()){
+            text.append(String.format("%02x ", bytes.get()));
+        }
+        return text.toString();
+    }
+
+    // Compare the common part of two channels window by window on the pool, and merge the ranges found
+    private static ByteDiff compare(FileChannel c1, FileChannel c2, int maxRanges, ForkJoinPool pool) throws IOException {
+        assert maxRanges >= 0;
+        assert pool != null;
+        long size1 = c1.size();
+        long size2 = c2.size();
+        long common = Math.min(size1, size2);
+
+        int count = (int) ((common + WINDOW_SIZE - 1) / WINDOW_SIZE);
+        var tasks = new ArrayList<ForkJoinTask<long[]>>(count);
+        for(int i = 0; i < count; ++i){
+            long start = (long) i * WINDOW_SIZE;
+            int size = (int) Math.min(WINDOW_SIZE, common - start);
+            tasks.add(pool.submit(() -> {
+                try {
+                    return compareWindow(c1.map(FileChannel.MapMode.READ_ONLY, start, size),
+                            c2.map(FileChannel.MapMode.READ_ONLY, start, size), start, maxRanges);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        // Each window gives {count, end of its last range, offset and end of its first ranges...},
+        // a range starting right after the last range of the previous window continues it
+        var ranges = new ArrayList<ByteRange>();
+        long rangeCount = 0;
+        long lastEnd = -GAP;
+        boolean lastKept = false;
+        for(var task : tasks){
+            long[] found;
+            try {
+                found = task.join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if(found[0] == 0){
+                continue;
+            }
+            rangeCount += found[0];
+            for(int k = 2; k < found.length; k += 2){
+                long offset = found[k];
+                long end = found[k + 1];
+                if(k == 2 && offset - lastEnd < GAP){
+                    --rangeCount;
+                    if(!lastKept){
+                        continue;
+                    }
+                    offset = ranges.remove(ranges.size() - 1).offset();
+                }
+                lastKept = ranges.size() < maxRanges;
+                if(lastKept){
+                    ranges.add(new ByteRange(offset, end - offset));
+                }
+            }
+            lastKept &= found[0] == (found.length - 2) / 2;
+            lastEnd = found[1];
+        }
+
+        return new ByteDiff(size1, size2, rangeCount, List.copyOf(ranges));
+    }
+
+    // Find the ranges where two windows differ, keeping the first maxRanges + 1 of them
+    private static long[] compareWindow(ByteBuffer w1, ByteBuffer w2, long start, int maxRanges){
+        int size = w1.limit();
+        long[] found = new long[2 + 2 * (maxRanges + 1)];
+        int stored = 0;
+        long count = 0;
+
+        int i = 0;
+        while(i < size){
+            int m = w1.slice(i, size - i).mismatch(w2.slice(i, size - i));
+            if(m < 0){
+                break;
+            }
+            int from = i + m;
+            // Extend the range until GAP equal bytes in a row
+            int end = from + 1;
+            for(int equal = 0, j = end; j < size && equal < GAP; ++j){
+                if(w1.get(j) == w2.get(j)){
+                    ++equal;
+                } else {
+                    equal = 0;
+                    end = j + 1;
+                }
+            }
+            ++count;
+            if(stored <= maxRanges){
+                found[2 + 2 * stored] = start + from;
+                found[3 + 2 * stored] = start + end;
+                ++stored;
+            }
+            found[1] = start + end;
+            i = end;
+        }
+
+        found[0] = count;
+        return Arrays.copyOf(found, 2 + 2 * stored);
+    }
+
     private static void showSameFileMessage(){
         System.out.println("== WARNING : The two inputs have the same content");
     }
@@ -83,6 +406,82 @@ public final class Diff {
         }
     }
 
+    private static void showPixelHeader(String file_1, String file_2, QOIStreamDecoder d1, QOIStreamDecoder d2){
+        System.out.println("======================================= PIXEL DIFF =======================================");
+        System.out.printf("== File 1 : '%s', %d x %d pixels, %d channels %n", file_1, d1.width(), d1.height(), d1.channels());
+        System.out.printf("== File 2 : '%s', %d x %d pixels, %d channels %n", file_2, d2.width(), d2.height(), d2.channels());
+        System.out.println("==========================================================================================");
+    }
+
+    private static void showPixelDiff(PixelDiff diff){
+        if(diff.same()){
+            System.out.println("== WARNING : The two images have the same pixels");
+            return;
+        }
+        var bounds = diff.bounds();
+        System.out.printf("== %d pixels differ, first at (%d, %d) ~ %08x ~ %08x%n",
+                diff.mismatches(), diff.firstX(), diff.firstY(), diff.first1(), diff.first2());
+        System.out.printf("== Largest difference : red %d, green %d, blue %d, alpha %d%n",
+                diff.maxDelta()[0], diff.maxDelta()[1], diff.maxDelta()[2], diff.maxDelta()[3]);
+        System.out.printf("== Differences between (%d, %d) and (%d, %d)%n",
+                bounds.x, bounds.y, bounds.x + bounds.width - 1, bounds.y + bounds.height - 1);
+    }
+
+    // Walk both images a run at a time, a run being cut where the run of the other side ends
+    private static PixelDiff comparePixels(QOIStreamDecoder d1, QOIStreamDecoder d2) throws IOException {
+        int width = d1.width();
+        long total = (long) width * d1.height();
+        int[] maxDelta = new int[4];
+        long mismatches = 0;
+        long first = -1;
+        int first1 = 0;
+        int first2 = 0;
+        long minX = width, minY = Long.MAX_VALUE, maxX = -1, maxY = -1;
+
+        long pixel = 0;
+        long left1 = 0;
+        long left2 = 0;
+        while(pixel < total){
+            if(left1 == 0){
+                left1 = d1.readRun(total - pixel);
+            }
+            if(left2 == 0){
+                left2 = d2.readRun(total - pixel);
+            }
+            long n = Math.min(left1, left2);
+            int p1 = d1.lastPixel();
+            int p2 = d2.lastPixel();
+            if(p1 != p2){
+                if(first < 0){
+                    first = pixel;
+                    first1 = p1;
+                    first2 = p2;
+                }
+                mismatches += n;
+                maxDelta[0] = Math.max(maxDelta[0], Math.abs(((p1 >>> 16) & 0xFF) - ((p2 >>> 16) & 0xFF)));
+                maxDelta[1] = Math.max(maxDelta[1], Math.abs(((p1 >>> 8) & 0xFF) - ((p2 >>> 8) & 0xFF)));
+                maxDelta[2] = Math.max(maxDelta[2], Math.abs((p1 & 0xFF) - (p2 & 0xFF)));
+                maxDelta[3] = Math.max(maxDelta[3], Math.abs((p1 >>> 24) - (p2 >>> 24)));
+                long y0 = pixel / width;
+                long y1 = (pixel + n - 1) / width;
+                // A span over several rows covers both the last and the first column
+                minX = Math.min(minX, y0 == y1 ? pixel % width : 0);
+                maxX = Math.max(maxX, y0 == y1 ? (pixel + n - 1) % width : width - 1);
+                minY = Math.min(minY, y0);
+                maxY = Math.max(maxY, y1);
+            }
+            pixel += n;
+            left1 -= n;
+            left2 -= n;
+        }
+        d1.checkEOF();
+        d2.checkEOF();
+
+        var bounds = maxX < 0 ? new Rectangle() : new Rectangle((int) minX, (int) minY, (int) (maxX - minX + 1), (int) (maxY - minY + 1));
+        return new PixelDiff(width, d1.height(), mismatches, first < 0 ? -1 : (int) (first % width),
+                first < 0 ? -1 : (int) (first / width), first1, first2, maxDelta, bounds);
+    }
+
     private static void showEnd(){
         System.out.println("========================================= END DIFF =======================================");
     }
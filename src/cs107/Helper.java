@@ -1,12 +1,29 @@
 package cs107;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.zip.Deflater;
 
 /**
  * Helper class. This class contains all the methods considered to be useful
@@ -92,22 +109,29 @@ public final class Helper {
      * @return (Image) - The corresponding Image
      */
     public static Image readImage(String path) {
+        return readPixels(path).toImage();
+    }
+
+    /**
+     * Read and decode an image from the disk into a flat buffer of ARGB packed pixels.
+     * The image can be one of the standard formats (png, jpeg ...)
+     * @param path (String) - Relative or Absolute Path to the image
+     * @return (PixelBuffer) - The corresponding image
+     */
+    public static PixelBuffer readPixels(String path) {
+        var event = new QOIEvents.ReadImage();
+        event.begin();
         try{
-            var io = ImageIO.read(new File(path));
-            var width  = io.getWidth();
-            var height = io.getHeight();
-            var array = new int[height][width];
-            for(var x = 0; x < height;++x){
-                for(var y = 0 ;y < width; ++y){
-                    array[x][y] = io.getRGB(y, x);
-                }
-            }
-            var nbrChannels = (byte) (io.getColorModel().hasAlpha() ? 4 : 3);
-            return new Image(array, nbrChannels, (byte) 0);
+            var file = new File(path);
+            var image = toPixels(ImageIO.read(file));
+            event.path = path;
+            // The size of the file is only asked to the system when a recording is running
+            event.commit(image.width(), image.height(), image.channels(), event.isEnabled() ? file.length() : 0,
+                    4L * image.width() * image.height());
+            return image;
         }catch (IOException e){
             return fail("An error occurred while trying to read from : \"%s\"%n", path);
         }
-
     }
 
     /**
@@ -116,23 +140,178 @@ public final class Helper {
      * @param image (Image) - Image to store
      */
     public static void writeImage(String path, Image image) {
-        int type = switch (image.channels){
-            case 3 -> BufferedImage.TYPE_3BYTE_BGR;
-            case 4 -> BufferedImage.TYPE_4BYTE_ABGR;
-            default -> fail("Cannot write this image, image.channels() == %d", image.channels);
-        };
-        var buffer = new BufferedImage(image.data[0].length, image.data.length, type);
-        for(var x = 0; x < buffer.getHeight(); ++x){
-            for(var y = 0 ; y < buffer.getWidth(); ++y){
-                buffer.setRGB(y, x, image.data[x][y]);
-            }
-        }
+        writeImage(path, PixelBuffer.fromImage(image));
+    }
+
+    /**
+     * Write an image stored in a flat buffer as "PNG" in the disk.
+     * This function writes to the folder called "res/"
+     * @param path (String) - Relative or Absolute path to the image
+     * @param image (PixelBuffer) - Image to store
+     */
+    public static void writeImage(String path, PixelBuffer image) {
+        writeImage(path, image, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Write an image stored in a flat buffer as "PNG" in the disk with the given compression level.
+     * This function writes to the folder called "res/"
+     * @param path (String) - Relative or Absolute path to the image
+     * @param image (PixelBuffer) - Image to store
+     * @param compressionLevel (int) - Deflate level from 0 (fastest) to 9 (smallest),
+     * or Deflater.DEFAULT_COMPRESSION for the default of the writer
+     */
+    public static void writeImage(String path, PixelBuffer image, int compressionLevel) {
+        var event = new QOIEvents.Write();
+        event.begin();
         var abs_path = res_folder + File.separator + path;
-        try {
-            ImageIO.write(buffer, "png", new File(abs_path));
+        try(var output = new FileOutputStream(abs_path)){
+            writePng(image, compressionLevel, output);
         }catch (IOException e){
             fail("An error occurred while trying to write to : \"%s\"%n", abs_path);
         }
+        event.path = abs_path;
+        event.commit(image.width(), image.height(), image.channels(), 4L * image.width() * image.height(),
+                event.isEnabled() ? new File(abs_path).length() : 0);
+    }
+
+    /**
+     * Encode an image stored in a flat buffer as "PNG" to a stream
+     * @apiNote The JDK writer chooses the filter of every row itself, only the deflate level can be set
+     * @param image (PixelBuffer) - Image to encode
+     * @param compressionLevel (int) - Deflate level from 0 (fastest) to 9 (smallest),
+     * or Deflater.DEFAULT_COMPRESSION for the default of the writer
+     * @param output (OutputStream) - Stream where to write the "PNG" file, not closed
+     * @throws IOException if the stream fails
+     */
+    public static void writePng(PixelBuffer image, int compressionLevel, OutputStream output) throws IOException {
+        assert compressionLevel == Deflater.DEFAULT_COMPRESSION || (compressionLevel >= 0 && compressionLevel <= 9);
+        var writer = ImageIO.getImageWritersByFormatName("png").next();
+        try(var stream = ImageIO.createImageOutputStream(output)){
+            writer.setOutput(stream);
+            var param = writer.getDefaultWriteParam();
+            if(compressionLevel != Deflater.DEFAULT_COMPRESSION){
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                // The writer uses the level 9 - round(9 * quality)
+                param.setCompressionQuality((9 - compressionLevel) / 9f);
+            }
+            writer.write(null, new IIOImage(toBufferedImage(image), null, null), param);
+        }finally{
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Convert an image decoded by ImageIO to a flat buffer of ARGB packed pixels.
+     * The usual "PNG" rasters (interleaved 8 bits RGB and RGBA, packed ARGB and RGB ints,
+     * indexed colors) are read straight from their DataBuffer, other images go through
+     * BufferedImage::getRGB. In all cases the pixels are exactly the ones of BufferedImage::getRGB
+     * @param io (BufferedImage) - Decoded image
+     * @return (PixelBuffer) - The corresponding image, with 4 channels if its color model has an alpha
+     */
+    static PixelBuffer toPixels(BufferedImage io) {
+        var width  = io.getWidth();
+        var height = io.getHeight();
+        var model = io.getColorModel();
+        var nbrChannels = (byte) (model.hasAlpha() ? 4 : 3);
+        var pixels = PixelBuffer.allocate(width, height, nbrChannels, (byte) 0);
+        var array = pixels.array();
+
+        var raster = io.getRaster();
+        var sampleModel = raster.getSampleModel();
+        var data = raster.getDataBuffer();
+        var tx = raster.getSampleModelTranslateX();
+        var ty = raster.getSampleModelTranslateY();
+
+        if(model instanceof IndexColorModel indexed){
+            var palette = new int[1 << indexed.getPixelSize()];
+            indexed.getRGBs(palette);
+            var row = new int[width];
+            for(var y = 0; y < height; ++y){
+                raster.getSamples(0, y, width, 1, 0, row);
+                for(int x = 0, i = y * width; x < width; ++x, ++i){
+                    array[i] = palette[row[x]];
+                }
+            }
+        }else if(data instanceof DataBufferInt ints && data.getNumBanks() == 1
+                && sampleModel instanceof SinglePixelPackedSampleModel packed
+                && (io.getType() == BufferedImage.TYPE_INT_ARGB || io.getType() == BufferedImage.TYPE_INT_RGB)){
+            var source = ints.getData();
+            var opaque = io.getType() == BufferedImage.TYPE_INT_RGB ? 0xFF_00_00_00 : 0;
+            for(var y = 0; y < height; ++y){
+                var start = data.getOffset() + packed.getOffset(-tx, y - ty);
+                if(opaque == 0){
+                    System.arraycopy(source, start, array, y * width, width);
+                }else{
+                    for(int x = 0, i = y * width; x < width; ++x, ++i){
+                        array[i] = source[start + x] | opaque;
+                    }
+                }
+            }
+        }else if(data instanceof DataBufferByte bytes && data.getNumBanks() == 1
+                && sampleModel instanceof PixelInterleavedSampleModel interleaved
+                && model instanceof ComponentColorModel && model.getColorSpace().isCS_sRGB()
+                && !model.isAlphaPremultiplied() && model.getNumComponents() == interleaved.getNumBands()
+                && Arrays.stream(interleaved.getSampleSize()).allMatch(size -> size == 8)
+                && (interleaved.getNumBands() == 3 || interleaved.getNumBands() == 4)){
+            var source = bytes.getData();
+            var offsets = interleaved.getBandOffsets();
+            var step = interleaved.getPixelStride();
+            var alpha = interleaved.getNumBands() == 4;
+            int r = offsets[0], g = offsets[1], b = offsets[2], a = alpha ? offsets[3] : 0;
+            for(var y = 0; y < height; ++y){
+                var p = data.getOffset() + (y - ty) * interleaved.getScanlineStride() - tx * step;
+                for(int x = 0, i = y * width; x < width; ++x, ++i, p += step){
+                    var argb = alpha ? (source[p + a] & 0xFF) << 24 : 0xFF_00_00_00;
+                    array[i] = argb | (source[p + r] & 0xFF) << 16 | (source[p + g] & 0xFF) << 8 | (source[p + b] & 0xFF);
+                }
+            }
+        }else{
+            io.getRGB(0, 0, width, height, array, 0, width);
+        }
+        return pixels;
+    }
+
+    /**
+     * Convert an image stored in a flat buffer to an image ImageIO can encode.
+     * An image of contiguous ARGB pixels is wrapped without copy, its int[] becomes the raster,
+     * any other layout is written straight into the bytes of the raster
+     * @param image (PixelBuffer) - Image to convert
+     * @return (BufferedImage) - The corresponding image, with an alpha channel if image has 4 channels
+     */
+    static BufferedImage toBufferedImage(PixelBuffer image) {
+        var width = image.width();
+        var height = image.height();
+        boolean alpha = switch (image.channels()){
+            case 3 -> false;
+            case 4 -> true;
+            default -> fail("Cannot write this image, image.channels() == %d", image.channels());
+        };
+
+        if(image.isContiguousARGB()){
+            var model = alpha ? ColorModel.getRGBdefault() : new DirectColorModel(24, 0xFF_00_00, 0xFF_00, 0xFF);
+            var masks = alpha ? new int[]{0xFF_00_00, 0xFF_00, 0xFF, 0xFF_00_00_00} : new int[]{0xFF_00_00, 0xFF_00, 0xFF};
+            var data = new DataBufferInt(image.array(), width * height);
+            var raster = Raster.createPackedRaster(data, width, height, width, masks, null);
+            return new BufferedImage(model, raster, false, null);
+        }
+
+        var buffer = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR);
+        var bytes = ((DataBufferByte) buffer.getRaster().getDataBuffer()).getData();
+        var row = new int[width];
+        var p = 0;
+        for(var y = 0; y < height; ++y){
+            image.readRow(y, row, 0);
+            for(var pixel : row){
+                if(alpha){
+                    bytes[p++] = (byte) (pixel >>> 24);
+                }
+                bytes[p++] = (byte) pixel;
+                bytes[p++] = (byte) (pixel >>> 8);
+                bytes[p++] = (byte) (pixel >>> 16);
+            }
+        }
+        return buffer;
     }
 
     // ==================================================================================
@@ -152,18 +331,35 @@ public final class Helper {
         }
     }
 
+    /**
+     * Map a file stored in the disk in memory, without copying its content on the heap
+     * @apiNote The file must be smaller than 2GB
+     * @param path (String) - Relative or Absolute path to the file
+     * @return (MappedByteBuffer) - Read-only view of the file content
+     */
+    public static MappedByteBuffer map(String path) {
+        try(var channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)){
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e){
+            return fail("An error occurred while trying to map : \"%s\"%n", path);
+        }
+    }
+
     /**
      * Write a file to the disk. This function writes to the folder called "res/"
      * @param path (String) - Relative or Absolute path to the file
      * @param content (byte[]) - Content of the file.
      */
     public static void write(String path, byte[] content){
+        var event = new QOIEvents.WriteFile();
+        event.begin();
         var abs_path = res_folder + File.separator + path;
         try(var output = new FileOutputStream(abs_path)){
             output.write(content);
         }catch (IOException e){
             fail("An error occurred while trying to write to : \"%s\"%n", abs_path);
         }
+        event.commit(abs_path, content.length);
     }
 
     // ==================================================================================
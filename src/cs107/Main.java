@@ -1,5 +1,7 @@
 package cs107;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 /**
@@ -87,7 +89,7 @@ public final class Main {
      */
     public static void pngToQoi(String inputFile, String outputFile){
         // Read a PNG file
-        var inputImage = Helper.readImage(inputFile);
+        var inputImage = Helper.readPixels(inputFile);
         // Encode the Image to QOI
         var outputFileContent = QOIEncoder.qoiFile(inputImage);
         // Write in binary mode the file content to 'output_file'
@@ -103,11 +105,27 @@ public final class Main {
         // Read in binary mode the file 'input_file'
         var inputFileContent = Helper.read(inputFile);
         // Decode the file using the 'QOI' decoder
-        var computedImage = QOIDecoder.decodeQoiFile(inputFileContent);
+        var computedImage = QOIDecoder.decodePixels(inputFileContent);
         // Write an image to 'output_file'
         Helper.writeImage(outputFile, computedImage);
     }
 
+    /**
+     * Converts a whole directory tree, "PNG" files to "QOI" and "QOI" files to "PNG"
+     * (".png" and ".qoi" in any case, "a/B.PNG" is written to "a/B.qoi")
+     * @param inputDirectory (String) - The path of the tree to convert
+     * @param outputDirectory (String) - The path where to store the generated files and the report
+     */
+    public static void convertDirectory(String inputDirectory, String outputDirectory){
+        try(var converter = new QOIBatchConverter()){
+            var report = converter.convert(Path.of(inputDirectory), Path.of(outputDirectory));
+            System.out.printf("%d files converted, %d failures, %.2f MP/s%n",
+                    report.results().size(), report.failures(), report.megapixelsPerSecond());
+        }catch (IOException e){
+            Helper.fail("An error occurred while trying to convert : \"%s\"%n", inputDirectory);
+        }
+    }
+
     /**
      * Computes the ratio
      * @param png (int) - Size of the "PNG" file
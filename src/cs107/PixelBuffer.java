@@ -0,0 +1,413 @@
+package cs107;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Image stored in one flat buffer, either a heap int[] of packed pixels or a
+ * (possibly direct) ByteBuffer of interleaved channels. Unlike Helper.Image, there is
+ * no array per row: a pixel (x, y) is at index y * stride + x of the buffer.
+ * The layout describes how the channels of a pixel are ordered in the buffer,
+ * conversions to and from the ARGB integers used by the codec are done row by row.
+ * @apiNote A direct buffer keeps the pixels off the Java heap and can be handed as is
+ * to native or NIO consumers through PixelBuffer::buffer
+ */
+public final class PixelBuffer {
+
+    /**
+     * Order of the channels of a pixel in the underlying buffer
+     */
+    public enum Layout {
+        /** One int per pixel, 0xAARRGGBB, as in Helper.Image */
+        INT_ARGB(1),
+        /** One int per pixel, 0xRRGGBBAA */
+        INT_RGBA(1),
+        /** Four bytes per pixel: red, green, blue, alpha */
+        BYTE_RGBA(4),
+        /** Four bytes per pixel: alpha, red, green, blue */
+        BYTE_ARGB(4),
+        /** Three bytes per pixel: red, green, blue. The alpha is always 255 */
+        BYTE_RGB(3);
+
+        private final int size;
+
+        Layout(int size){
+            this.size = size;
+        }
+
+        /**
+         * Number of elements of the underlying buffer used by one pixel
+         * @return (int) - 1 for int layouts, the number of bytes per pixel otherwise
+         */
+        public int pixelSize(){
+            return size;
+        }
+
+        /**
+         * Tells if this layout is stored in an int[]
+         * @return (boolean) - true for int layouts, false for byte layouts
+         */
+        public boolean isPacked(){
+            return this == INT_ARGB || this == INT_RGBA;
+        }
+    }
+
+    private final int[] array;
+    private final ByteBuffer buffer;
+    // Big endian int view of the buffer for the 4 bytes layouts, null otherwise
+    private final IntBuffer ints;
+    private final Layout layout;
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final byte channels;
+    private final byte colorSpace;
+
+    private PixelBuffer(int[] array, ByteBuffer buffer, Layout layout, int width, int height, int stride, byte channels, byte colorSpace){
+        assert width > 0 && height > 0;
+        assert stride >= width;
+        assert channels == QOISpecification.RGB || channels == QOISpecification.RGBA;
+        assert colorSpace == QOISpecification.sRGB || colorSpace == QOISpecification.ALL;
+        this.array = array;
+        this.buffer = buffer;
+        this.ints = buffer != null && layout.pixelSize() == 4 ? buffer.duplicate().clear().asIntBuffer() : null;
+        this.layout = layout;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+        this.channels = channels;
+        this.colorSpace = colorSpace;
+    }
+
+    // ==================================================================================
+    // =================================== FACTORIES ====================================
+    // ==================================================================================
+
+    /**
+     * Wrap packed pixels, without copying them
+     * @param pixels (int[]) - Packed pixels, row after row
+     * @param layout (Layout) - Either Layout.INT_ARGB or Layout.INT_RGBA
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param stride (int) - Distance between two rows, in pixels
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @return (PixelBuffer) - The image backed by the given array
+     * @throws AssertionError if the parameters are invalid or the array is too small
+     */
+    public static PixelBuffer wrap(int[] pixels, Layout layout, int width, int height, int stride, byte channels, byte colorSpace){
+        assert pixels != null;
+        assert layout != null && layout.isPacked();
+        assert (long) stride * (height - 1) + width <= pixels.length;
+        return new PixelBuffer(pixels, null, layout, width, height, stride, channels, colorSpace);
+    }
+
+    /**
+     * Wrap ARGB packed pixels, without copying them
+     * @param pixels (int[]) - ARGB packed pixels, row after row
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @return (PixelBuffer) - The image backed by the given array
+     * @throws AssertionError if the parameters are invalid or the array is too small
+     */
+    public static PixelBuffer wrap(int[] pixels, int width, int height, byte channels, byte colorSpace){
+        return wrap(pixels, Layout.INT_ARGB, width, height, width, channels, colorSpace);
+    }
+
+    /**
+     * Wrap interleaved channels, without copying them. The pixels are read and written
+     * with absolute accesses, the position and limit of the buffer are ignored.
+     * @param pixels (ByteBuffer) - Interleaved channels, row after row
+     * @param layout (Layout) - One of the byte layouts
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param stride (int) - Distance between two rows, in pixels
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @return (PixelBuffer) - The image backed by the given buffer
+     * @throws AssertionError if the parameters are invalid or the buffer is too small
+     */
+    public static PixelBuffer wrap(ByteBuffer pixels, Layout layout, int width, int height, int stride, byte channels, byte colorSpace){
+        assert pixels != null;
+        assert layout != null && !layout.isPacked();
+        assert ((long) stride * (height - 1) + width) * layout.pixelSize() <= pixels.capacity();
+        return new PixelBuffer(null, pixels.duplicate().order(ByteOrder.BIG_ENDIAN), layout, width, height, stride, channels, colorSpace);
+    }
+
+    /**
+     * Allocate an image on the heap, stored as ARGB packed pixels
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @return (PixelBuffer) - The new image, all its pixels are 0
+     * @throws AssertionError if the parameters are invalid
+     */
+    public static PixelBuffer allocate(int width, int height, byte channels, byte colorSpace){
+        assert (long) width * height <= Integer.MAX_VALUE - 8;
+        return wrap(new int[width * height], width, height, channels, colorSpace);
+    }
+
+    /**
+     * Allocate an image off the heap, in a direct buffer
+     * @apiNote A direct buffer holds at most 2GB, that is 536 million RGBA pixels
+     * @param layout (Layout) - One of the byte layouts
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @return (PixelBuffer) - The new image, all its bytes are 0
+     * @throws AssertionError if the parameters are invalid or the image is too large
+     */
+    public static PixelBuffer allocateDirect(Layout layout, int width, int height, byte channels, byte colorSpace){
+        assert layout != null && !layout.isPacked();
+        long size = (long) width * height * layout.pixelSize();
+        assert size <= Integer.MAX_VALUE;
+        return wrap(ByteBuffer.allocateDirect((int) size), layout, width, height, width, channels, colorSpace);
+    }
+
+    /**
+     * Copy an image in a new ARGB packed buffer
+     * @param image (Helper.Image) - The image to copy
+     * @return (PixelBuffer) - The copy of the image
+     * @throws AssertionError if the image is null
+     */
+    public static PixelBuffer fromImage(Helper.Image image){
+        assert image != null;
+        int[][] data = image.data();
+        PixelBuffer pixels = allocate(data[0].length, data.length, image.channels(), image.color_space());
+        for(int y = 0; y < data.length; ++y) {
+            pixels.writeRow(y, data[y], 0);
+        }
+        return pixels;
+    }
+
+    /**
+     * Copy this image in a new Helper.Image
+     * @return (Helper.Image) - The copy of the image
+     */
+    public Helper.Image toImage(){
+        int[][] data = new int[height][width];
+        for(int y = 0; y < height; ++y) {
+            readRow(y, data[y], 0);
+        }
+        return Helper.generateImage(data, channels, colorSpace);
+    }
+
+    // ==================================================================================
+    // =================================== ACCESSORS ====================================
+    // ==================================================================================
+
+    public int width(){
+        return width;
+    }
+
+    public int height(){
+        return height;
+    }
+
+    /**
+     * Distance between two rows
+     * @return (int) - Number of pixels between the start of two consecutive rows
+     */
+    public int stride(){
+        return stride;
+    }
+
+    public byte channels(){
+        return channels;
+    }
+
+    public byte colorSpace(){
+        return colorSpace;
+    }
+
+    public Layout layout(){
+        return layout;
+    }
+
+    /**
+     * Tells if this image is stored as an int[] that can be used without conversion by the codec,
+     * that is ARGB packed pixels with no gap between the rows
+     * @return (boolean) - true if PixelBuffer::array holds exactly the ARGB pixels of the image
+     */
+    public boolean isContiguousARGB(){
+        return layout == Layout.INT_ARGB && stride == width;
+    }
+
+    /**
+     * Underlying array of an int layout
+     * @return (int[]) - The array, not a copy
+     * @throws AssertionError if the image is stored in a ByteBuffer
+     */
+    public int[] array(){
+        assert array != null;
+        return array;
+    }
+
+    /**
+     * Underlying buffer of a byte layout
+     * @return (ByteBuffer) - A big endian view sharing the content of the buffer, not a copy
+     * @throws AssertionError if the image is stored in an int[]
+     */
+    public ByteBuffer buffer(){
+        assert buffer != null;
+        return buffer;
+    }
+
+    // ==================================================================================
+    // ================================= PIXEL ACCESS ===================================
+    // ==================================================================================
+
+    /**
+     * Read a pixel
+     * @param x (int) - Column of the pixel
+     * @param y (int) - Row of the pixel
+     * @return (int) - The ARGB pixel
+     */
+    public int getARGB(int x, int y){
+        assert 0 <= x && x < width && 0 <= y && y < height;
+        int index = y * stride + x;
+        return switch(layout) {
+            case INT_ARGB -> array[index];
+            case INT_RGBA -> Integer.rotateRight(array[index], 8);
+            default -> readARGB(index * layout.pixelSize());
+        };
+    }
+
+    /**
+     * Write a pixel
+     * @param x (int) - Column of the pixel
+     * @param y (int) - Row of the pixel
+     * @param argb (int) - The ARGB pixel
+     */
+    public void setARGB(int x, int y, int argb){
+        assert 0 <= x && x < width && 0 <= y && y < height;
+        int index = y * stride + x;
+        switch(layout) {
+            case INT_ARGB -> array[index] = argb;
+            case INT_RGBA -> array[index] = Integer.rotateLeft(argb, 8);
+            default -> writeARGB(index * layout.pixelSize(), argb);
+        }
+    }
+
+    /**
+     * Read a row of the image as ARGB pixels
+     * @param y (int) - Index of the row
+     * @param row (int[]) - Buffer where to store the pixels
+     * @param offset (int) - Index in the buffer of the first pixel
+     */
+    public void readRow(int y, int[] row, int offset){
+        assert 0 <= y && y < height;
+        assert row != null && offset >= 0 && offset + width <= row.length;
+        int start = y * stride;
+        switch(layout) {
+            case INT_ARGB -> System.arraycopy(array, start, row, offset, width);
+            case INT_RGBA -> PixelConversion.rgbaToArgb(array, start, row, offset, width);
+            case BYTE_ARGB -> ints.get(start, row, offset, width);
+            case BYTE_RGBA -> {
+                ints.get(start, row, offset, width);
+                PixelConversion.rgbaToArgb(row, offset, row, offset, width);
+            }
+            case BYTE_RGB -> {
+                if(buffer.hasArray()) {
+                    PixelConversion.rgbToArgb(buffer.array(), buffer.arrayOffset() + start * 3, row, offset, width);
+                    return;
+                }
+                for(int x = 0; x < width; ++x) {
+                    row[offset + x] = readARGB((start + x) * 3);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a row of the image from ARGB pixels
+     * @param y (int) - Index of the row
+     * @param row (int[]) - Buffer containing the pixels
+     * @param offset (int) - Index in the buffer of the first pixel
+     */
+    public void writeRow(int y, int[] row, int offset){
+        assert 0 <= y && y < height;
+        assert row != null && offset >= 0 && offset + width <= row.length;
+        int start = y * stride;
+        switch(layout) {
+            case INT_ARGB -> System.arraycopy(row, offset, array, start, width);
+            case INT_RGBA -> PixelConversion.argbToRgba(row, offset, array, start, width);
+            case BYTE_ARGB -> ints.put(start, row, offset, width);
+            default -> {
+                if(buffer.hasArray()) {
+                    int index = buffer.arrayOffset() + start * layout.pixelSize();
+                    if(layout == Layout.BYTE_RGBA) {
+                        PixelConversion.argbToRgba(row, offset, buffer.array(), index, width);
+                    } else {
+                        PixelConversion.argbToRgb(row, offset, buffer.array(), index, width);
+                    }
+                    return;
+                }
+                int size = layout.pixelSize();
+                for(int x = 0; x < width; ++x) {
+                    writeARGB((start + x) * size, row[offset + x]);
+                }
+            }
+        }
+    }
+
+    private int readARGB(int index){
+        return switch(layout) {
+            case BYTE_RGBA -> Integer.rotateRight(buffer.getInt(index), 8);
+            case BYTE_ARGB -> buffer.getInt(index);
+            default -> 0xFF_00_00_00 | ((buffer.get(index) & 0xFF) << 16)
+                    | ((buffer.get(index + 1) & 0xFF) << 8) | (buffer.get(index + 2) & 0xFF);
+        };
+    }
+
+    private void writeARGB(int index, int argb){
+        switch(layout) {
+            case BYTE_RGBA -> buffer.putInt(index, Integer.rotateLeft(argb, 8));
+            case BYTE_ARGB -> buffer.putInt(index, argb);
+            default -> {
+                buffer.put(index, (byte) (argb >>> 16));
+                buffer.put(index + 1, (byte) (argb >>> 8));
+                buffer.put(index + 2, (byte) argb);
+            }
+        }
+    }
+
+    // ==================================================================================
+    // ==================================== EQUALITY ====================================
+    // ==================================================================================
+
+    /**
+     * Two images are equal if they have the same size, channels, color space and ARGB pixels,
+     * whatever their layout and storage
+     */
+    @Override
+    public boolean equals(Object obj){
+        if(!(obj instanceof PixelBuffer other)
+                || width != other.width || height != other.height
+                || channels != other.channels || colorSpace != other.colorSpace) {
+            return false;
+        }
+        for(int y = 0; y < height; ++y) {
+            for(int x = 0; x < width; ++x) {
+                if(getARGB(x, y) != other.getARGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash of the shape of the image only, so that hashing a gigapixel image stays O(1)
+     */
+    @Override
+    public int hashCode(){
+        return ((width * 31 + height) * 31 + channels) * 31 + colorSpace;
+    }
+
+}
@@ -0,0 +1,203 @@
+package cs107;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Conversion kernels between the ARGB integers used by the codec and the other pixel formats.
+ * Every kernel is a single pass over flat arrays, without temporary arrays. The 4 bytes
+ * of a pixel are loaded and stored as one big endian int through a VarHandle, which the JIT
+ * compiles to a single (byte swapping) memory access, so the loops run close to memory bandwidth.
+ * Source and destination may be the same array when they have the same type.
+ */
+public final class PixelConversion {
+
+    // Hide default constructor
+    private PixelConversion(){}
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    // ==================================================================================
+    // ============================== ARGB <-> RGBA METHODS =============================
+    // ==================================================================================
+
+    /**
+     * Convert ARGB integers to interleaved RGBA bytes
+     * @param src (int[]) - ARGB pixels
+     * @param srcPos (int) - Index of the first pixel in src
+     * @param dst (byte[]) - RGBA bytes
+     * @param dstPos (int) - Index of the first byte in dst
+     * @param count (int) - Number of pixels
+     */
+    public static void argbToRgba(int[] src, int srcPos, byte[] dst, int dstPos, int count){
+        for(int i = 0; i < count; ++i, dstPos += 4) {
+            INT.set(dst, dstPos, Integer.rotateLeft(src[srcPos + i], 8));
+        }
+    }
+
+    /**
+     * Convert interleaved RGBA bytes to ARGB integers
+     * @param src (byte[]) - RGBA bytes
+     * @param srcPos (int) - Index of the first byte in src
+     * @param dst (int[]) - ARGB pixels
+     * @param dstPos (int) - Index of the first pixel in dst
+     * @param count (int) - Number of pixels
+     */
+    public static void rgbaToArgb(byte[] src, int srcPos, int[] dst, int dstPos, int count){
+        for(int i = 0; i < count; ++i, srcPos += 4) {
+            dst[dstPos + i] = Integer.rotateRight((int) INT.get(src, srcPos), 8);
+        }
+    }
+
+    /**
+     * Convert ARGB integers to RGBA integers (0xRRGGBBAA)
+     * @param src (int[]) - ARGB pixels
+     * @param srcPos (int) - Index of the first pixel in src
+     * @param dst (int[]) - RGBA pixels
+     * @param dstPos (int) - Index of the first pixel in dst
+     * @param count (int) - Number of pixels
+     */
+    public static void argbToRgba(int[] src, int srcPos, int[] dst, int dstPos, int count){
+        for(int i = 0; i < count; ++i) {
+            dst[dstPos + i] = Integer.rotateLeft(src[srcPos + i], 8);
+        }
+    }
+
+    /**
+     * Convert RGBA integers (0xRRGGBBAA) to ARGB integers
+     * @param src (int[]) - RGBA pixels
+     * @param srcPos (int) - Index of the first pixel in src
+     * @param dst (int[]) - ARGB pixels
+     * @param dstPos (int) - Index of the first pixel in dst
+     * @param count (int) - Number of pixels
+     */
+    public static void rgbaToArgb(int[] src, int srcPos, int[] dst, int dstPos, int count){
+        for(int i = 0; i < count; ++i) {
+            dst[dstPos + i] = Integer.rotateRight(src[srcPos + i], 8);
+        }
+    }
+
+    // ==================================================================================
+    // =============================== RGB <-> RGBA METHODS =============================
+    // ==================================================================================
+
+    /**
+     * Convert ARGB integers to interleaved RGB bytes, dropping the alpha
+     * @param src (int[]) - ARGB pixels
+     * @param srcPos (int) - Index of the first pixel in src
+     * @param dst (byte[]) - RGB bytes
+     * @param dstPos (int) - Index of the first byte in dst
+     * @param count (int) - Number of pixels
+     */
+    public static void argbToRgb(int[] src, int srcPos, byte[] dst, int dstPos, int count){
+        for(int i = 0; i < count; ++i, dstPos += 3) {
+            int pixel = src[srcPos + i];
+            dst[dstPos] = (byte) (pixel >>> 16);
+            dst[dstPos + 1] = (byte) (pixel >>> 8);
+            dst[dstPos + 2] = (byte) pixel;
+        }
+    }
+
+    /**
+     * Convert interleaved RGB bytes to opaque ARGB integers
+     * @param src (byte[]) - RGB bytes
+     * @param srcPos (int) - Index of the first byte in src
+     * @param dst (int[]) - ARGB pixels
+     * @param dstPos (int) - Index of the first pixel in dst
+     * @param count (int) - Number of pixels
+     */
+    public static void rgbToArgb(byte[] src, int srcPos, int[] dst, int dstPos, int count){
+        for(int i = 0; i < count; ++i, srcPos += 3) {
+            dst[dstPos + i] = 0xFF_00_00_00 | (src[srcPos] & 0xFF) << 16 | (src[srcPos + 1] & 0xFF) << 8 | (src[srcPos + 2] & 0xFF);
+        }
+    }
+
+    /**
+     * Convert interleaved RGB bytes to opaque interleaved RGBA bytes
+     * @param src (byte[]) - RGB bytes
+     * @param srcPos (int) - Index of the first byte in src
+     * @param dst (byte[]) - RGBA bytes, another array than src
+     * @param dstPos (int) - Index of the first byte in dst
+     * @param count (int) - Number of pixels
+     */
+    public static void rgbToRgba(byte[] src, int srcPos, byte[] dst, int dstPos, int count){
+        assert src != dst;
+        for(int i = 0; i < count; ++i, srcPos += 3, dstPos += 4) {
+            INT.set(dst, dstPos, (src[srcPos] & 0xFF) << 24 | (src[srcPos + 1] & 0xFF) << 16 | (src[srcPos + 2] & 0xFF) << 8 | 0xFF);
+        }
+    }
+
+    /**
+     * Convert interleaved RGBA bytes to interleaved RGB bytes, dropping the alpha
+     * @param src (byte[]) - RGBA bytes
+     * @param srcPos (int) - Index of the first byte in src
+     * @param dst (byte[]) - RGB bytes, may be src if dstPos <= srcPos
+     * @param dstPos (int) - Index of the first byte in dst
+     * @param count (int) - Number of pixels
+     */
+    public static void rgbaToRgb(byte[] src, int srcPos, byte[] dst, int dstPos, int count){
+        for(int i = 0; i < count; ++i, srcPos += 4, dstPos += 3) {
+            dst[dstPos] = src[srcPos];
+            dst[dstPos + 1] = src[srcPos + 1];
+            dst[dstPos + 2] = src[srcPos + 2];
+        }
+    }
+
+    // ==================================================================================
+    // ============================ PREMULTIPLIED ALPHA METHODS =========================
+    // ==================================================================================
+
+    /**
+     * Multiply the colors of ARGB pixels by their alpha, in place. Each channel becomes
+     * round(channel * alpha / 255)
+     * @param pixels (int[]) - ARGB pixels
+     * @param pos (int) - Index of the first pixel
+     * @param count (int) - Number of pixels
+     */
+    public static void premultiply(int[] pixels, int pos, int count){
+        for(int i = pos; i < pos + count; ++i) {
+            int pixel = pixels[i];
+            int a = pixel >>> 24;
+            if(a == 0xFF) {
+                continue;
+            }
+            pixels[i] = a << 24 | multiply((pixel >>> 16) & 0xFF, a) << 16
+                    | multiply((pixel >>> 8) & 0xFF, a) << 8 | multiply(pixel & 0xFF, a);
+        }
+    }
+
+    /**
+     * Divide the colors of premultiplied ARGB pixels by their alpha, in place. Each channel becomes
+     * min(255, round(channel * 255 / alpha)), a fully transparent pixel becomes 0
+     * @param pixels (int[]) - Premultiplied ARGB pixels
+     * @param pos (int) - Index of the first pixel
+     * @param count (int) - Number of pixels
+     */
+    public static void unpremultiply(int[] pixels, int pos, int count){
+        for(int i = pos; i < pos + count; ++i) {
+            int pixel = pixels[i];
+            int a = pixel >>> 24;
+            if(a == 0xFF) {
+                continue;
+            }
+            if(a == 0) {
+                pixels[i] = 0;
+                continue;
+            }
+            pixels[i] = a << 24 | divide((pixel >>> 16) & 0xFF, a) << 16
+                    | divide((pixel >>> 8) & 0xFF, a) << 8 | divide(pixel & 0xFF, a);
+        }
+    }
+
+    // round(c * a / 255) without a division, exact for c, a in [0, 255]
+    private static int multiply(int c, int a){
+        int t = c * a + 128;
+        return (t + (t >>> 8)) >>> 8;
+    }
+
+    private static int divide(int c, int a){
+        return Math.min(255, (c * 255 + a / 2) / a);
+    }
+
+}
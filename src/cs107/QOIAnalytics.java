@@ -0,0 +1,135 @@
+package cs107;
+
+import java.awt.Rectangle;
+
+/**
+ * Statistics of "Quite Ok Image" files computed from the chunks, without decoding the pixels
+ * in a buffer. The chunks are walked once, keeping only the previous pixel and the index,
+ * and a "QOI_OP_RUN" chunk counts as its length times the previous pixel in constant time,
+ * so run-heavy files are analysed much faster than they are decoded.
+ * The colors are averaged weighted by their alpha (premultiplied), as in QOIThumbnail.
+ */
+public final class QOIAnalytics {
+
+    // Hide default constructor
+    private QOIAnalytics(){}
+
+    /**
+     * Statistics of a file
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param histogram (long[][]) - Number of pixels of every value of the red, green, blue and alpha channels,
+     * in this order, 4 arrays of 256 counts
+     * @param averageColor (int) - ARGB average of the pixels, 0 if they are all fully transparent
+     * @param alphaCoverage (double) - Sum of the alphas divided by 255 times the number of pixels
+     * @param opaque (boolean) - true if every alpha is 255
+     * @param solidColor (boolean) - true if all the pixels are the same
+     * @param bounds (Rectangle) - Smallest rectangle holding the pixels that are not fully transparent,
+     * empty if there is none
+     */
+    public record Analysis(int width, int height, long[][] histogram, int averageColor, double alphaCoverage,
+                           boolean opaque, boolean solidColor, Rectangle bounds) {}
+
+    // ==================================================================================
+    // ================================ ANALYSIS METHODS ================================
+    // ==================================================================================
+
+    /**
+     * Compute all the statistics of a file in one walk over its chunks
+     * @param content (byte[]) - Content of the file
+     * @return (Analysis) - Statistics of the file
+     * @throws AssertionError if content is null or corrupted
+     */
+    public static Analysis analyze(byte[] content){
+        int[] header = QOIDecoder.decodeHeader(content, 0);
+        int width = header[0];
+        long[] red = new long[256];
+        long[] green = new long[256];
+        long[] blue = new long[256];
+        long[] alpha = new long[256];
+        // Sums of the premultiplied colors, and extent of the visible pixels
+        long[] sums = new long[4];
+        long[] extent = {Long.MAX_VALUE, Long.MAX_VALUE, -1, -1};
+        int[] first = new int[1];
+        boolean[] solid = {true};
+
+        QOIDecoder.walk(content, new int[64], (chunk, pixel, index, count) -> {
+            int a = pixel >>> 24;
+            int r = (pixel >>> 16) & 0xFF;
+            int g = (pixel >>> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            red[r] += count;
+            green[g] += count;
+            blue[b] += count;
+            alpha[a] += count;
+            sums[0] += (long) a * count;
+            sums[1] += (long) r * a * count;
+            sums[2] += (long) g * a * count;
+            sums[3] += (long) b * a * count;
+
+            if(index == 0) {
+                first[0] = pixel;
+            } else if(pixel != first[0]) {
+                solid[0] = false;
+            }
+
+            if(a != 0) {
+                long y0 = index / width;
+                long y1 = (index + count - 1) / width;
+                long x0 = index % width;
+                long x1 = (index + count - 1) % width;
+                if(y0 != y1) {
+                    // A run over several rows covers both the last and the first column
+                    x0 = 0;
+                    x1 = width - 1;
+                }
+                extent[0] = Math.min(extent[0], x0);
+                extent[1] = Math.min(extent[1], y0);
+                extent[2] = Math.max(extent[2], x1);
+                extent[3] = Math.max(extent[3], y1);
+            }
+            return true;
+        });
+
+        long pixels = (long) width * header[1];
+        int average = 0;
+        if(sums[0] > 0) {
+            average = (int) ((sums[0] + pixels / 2) / pixels) << 24
+                    | (int) ((sums[1] + sums[0] / 2) / sums[0]) << 16
+                    | (int) ((sums[2] + sums[0] / 2) / sums[0]) << 8
+                    | (int) ((sums[3] + sums[0] / 2) / sums[0]);
+        }
+        var bounds = extent[2] < 0 ? new Rectangle()
+                : new Rectangle((int) extent[0], (int) extent[1], (int) (extent[2] - extent[0] + 1), (int) (extent[3] - extent[1] + 1));
+
+        return new Analysis(width, header[1], new long[][]{red, green, blue, alpha}, average,
+                sums[0] / (255.0 * pixels), alpha[255] == pixels, solid[0], bounds);
+    }
+
+    /**
+     * Tells if every pixel of a file is fully opaque, stopping at the first one that isn't
+     * @param content (byte[]) - Content of the file
+     * @return (boolean) - true if every alpha is 255
+     * @throws AssertionError if content is null or corrupted
+     */
+    public static boolean isOpaque(byte[] content){
+        return QOIDecoder.walk(content, new int[64], (chunk, pixel, index, count) -> pixel >>> 24 == 0xFF);
+    }
+
+    /**
+     * Tells if all the pixels of a file are the same, stopping at the first one that differs
+     * @param content (byte[]) - Content of the file
+     * @return (boolean) - true if the image is a single solid color
+     * @throws AssertionError if content is null or corrupted
+     */
+    public static boolean isSolidColor(byte[] content){
+        int[] first = new int[1];
+        return QOIDecoder.walk(content, new int[64], (chunk, pixel, index, count) -> {
+            if(index == 0) {
+                first[0] = pixel;
+            }
+            return pixel == first[0];
+        });
+    }
+
+}
@@ -0,0 +1,334 @@
+package cs107;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/**
+ * Converter of whole directory trees, "PNG" files to "Quite Ok Image" files and back.
+ * Every file goes through three stages: reading on the I/O executor, decoding and encoding
+ * on the CPU executor, writing on the I/O executor. The walk of the tree only submits a file
+ * once its estimated memory fits in the budget of in-flight images, so a tree of any size
+ * is converted with a bounded amount of memory.
+ * The output tree mirrors the input tree: a/b.png is written to a/b.qoi and a/b.qoi to a/b.png.
+ */
+public final class QOIBatchConverter implements Closeable {
+
+    /**
+     * Default budget of in-flight image memory, in bytes
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 1L << 30;
+
+    /**
+     * Name of the summary report written at the root of the output tree
+     */
+    public static final String REPORT_NAME = "conversion-report.csv";
+
+    // The budget is counted in KiB so that it fits in the permits of a Semaphore
+    private static final int UNIT = 1 << 10;
+
+    private final ExecutorService io;
+    private final ExecutorService cpu;
+    private final boolean owned;
+    private final int budget;
+    private final Semaphore memory;
+
+    /**
+     * Create a converter with its own executors: an unbounded pool for the I/O,
+     * bounded in practice by the memory budget, and one thread per core for the CPU work
+     */
+    public QOIBatchConverter(){
+        this(Executors.newCachedThreadPool(), Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()),
+                DEFAULT_MEMORY_BUDGET, true);
+    }
+
+    /**
+     * Create a converter running on the given executors. They are not shut down by QOIBatchConverter::close
+     * @param io (ExecutorService) - Executor reading and writing the files
+     * @param cpu (ExecutorService) - Executor decoding and encoding the images
+     * @param memoryBudget (long) - Maximum estimated memory of the images being converted at once, in bytes
+     * @throws AssertionError if one of the executors is null or the budget is invalid
+     */
+    public QOIBatchConverter(ExecutorService io, ExecutorService cpu, long memoryBudget){
+        this(io, cpu, memoryBudget, false);
+    }
+
+    private QOIBatchConverter(ExecutorService io, ExecutorService cpu, long memoryBudget, boolean owned){
+        assert io != null && cpu != null;
+        assert memoryBudget >= UNIT && memoryBudget / UNIT <= Integer.MAX_VALUE;
+
+        this.io = io;
+        this.cpu = cpu;
+        this.owned = owned;
+        this.budget = (int) (memoryBudget / UNIT);
+        this.memory = new Semaphore(budget);
+    }
+
+    /**
+     * Result of the conversion of a single file
+     * @param source (Path) - Converted file
+     * @param target (Path) - Written file
+     * @param inputBytes (long) - Size of the converted file
+     * @param outputBytes (long) - Size of the written file, 0 if the conversion failed
+     * @param pixels (long) - Number of pixels of the image
+     * @param nanos (long) - Time from the start of the reading to the end of the writing
+     * @param error (String) - Reason of the failure, null if the conversion succeeded
+     */
+    public record Result(Path source, Path target, long inputBytes, long outputBytes, long pixels, long nanos, String error){
+
+        public boolean succeeded(){
+            return error == null;
+        }
+    }
+
+    /**
+     * Results of the conversion of a tree
+     * @param results (List<Result>) - Result of every file, in completion order
+     * @param nanos (long) - Wall time of the whole conversion
+     */
+    public record Report(List<Result> results, long nanos){
+
+        public long failures(){
+            return results.stream().filter(r -> !r.succeeded()).count();
+        }
+
+        public long inputBytes(){
+            return results.stream().mapToLong(Result::inputBytes).sum();
+        }
+
+        public long outputBytes(){
+            return results.stream().mapToLong(Result::outputBytes).sum();
+        }
+
+        public long pixels(){
+            return results.stream().filter(Result::succeeded).mapToLong(Result::pixels).sum();
+        }
+
+        /**
+         * Aggregate throughput of the conversion
+         * @return (double) - Megabytes read per second of wall time
+         */
+        public double megabytesPerSecond(){
+            return nanos == 0 ? 0 : inputBytes() * 1e3 / nanos;
+        }
+
+        /**
+         * Aggregate throughput of the conversion
+         * @return (double) - Megapixels converted per second of wall time
+         */
+        public double megapixelsPerSecond(){
+            return nanos == 0 ? 0 : pixels() * 1e3 / nanos;
+        }
+
+        /**
+         * Write the report as CSV, one line per file followed by the aggregate lines
+         * @param path (Path) - File where to write the report
+         * @throws IOException if the file cannot be written
+         */
+        public void write(Path path) throws IOException {
+            var lines = new ArrayList<String>(results.size() + 8);
+            lines.add("source,target,status,input bytes,output bytes,pixels,milliseconds,error");
+            for(Result r : results) {
+                lines.add(String.format(Locale.ROOT, "\"%s\",\"%s\",%s,%d,%d,%d,%.3f,\"%s\"",
+                        r.source(), r.target(), r.succeeded() ? "ok" : "failed",
+                        r.inputBytes(), r.outputBytes(), r.pixels(), r.nanos() / 1e6,
+                        r.succeeded() ? "" : r.error().replace('"', '\'')));
+            }
+            lines.add("");
+            lines.add(String.format(Locale.ROOT, "# files,%d", results.size()));
+            lines.add(String.format(Locale.ROOT, "# failures,%d", failures()));
+            lines.add(String.format(Locale.ROOT, "# input bytes,%d", inputBytes()));
+            lines.add(String.format(Locale.ROOT, "# output bytes,%d", outputBytes()));
+            lines.add(String.format(Locale.ROOT, "# seconds,%.3f", nanos / 1e9));
+            lines.add(String.format(Locale.ROOT, "# MB/s,%.2f", megabytesPerSecond()));
+            lines.add(String.format(Locale.ROOT, "# MP/s,%.2f", megapixelsPerSecond()));
+            Files.write(path, lines);
+        }
+    }
+
+    // ==================================================================================
+    // =============================== CONVERSION METHODS ===============================
+    // ==================================================================================
+
+    /**
+     * Convert every "PNG" and "Quite Ok Image" file of a tree and write the report
+     * at the root of the output tree
+     * @param source (Path) - Root of the tree to convert
+     * @param target (Path) - Root of the output tree, created if needed
+     * @return (Report) - Result of every file and aggregate throughput
+     * @throws IOException if the tree cannot be walked or the report cannot be written
+     * @throws AssertionError if one of the paths is null or the source is not a directory
+     */
+    public Report convert(Path source, Path target) throws IOException {
+        assert source != null && target != null;
+        assert Files.isDirectory(source);
+
+        var results = new ConcurrentLinkedQueue<Result>();
+        long start = System.nanoTime();
+
+        Path output = target.toAbsolutePath().normalize();
+        try(Stream<Path> files = Files.walk(source)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> !file.toAbsolutePath().normalize().startsWith(output))
+                    .forEach(file -> {
+                        String name = source.relativize(file).toString();
+                        // Extensions are matched in any case, the output always gets a lower case one
+                        String extension = name.substring(Math.max(0, name.length() - 4)).toLowerCase(Locale.ROOT);
+                        String stem = name.substring(0, name.length() - extension.length());
+                        if(extension.equals(".png")) {
+                            submit(file, target.resolve(stem + ".qoi"), true, results);
+                        } else if(extension.equals(".qoi")) {
+                            submit(file, target.resolve(stem + ".png"), false, results);
+                        }
+                    });
+        } finally {
+            // Every file in flight holds a part of the budget, taking all of it waits for them
+            memory.acquireUninterruptibly(budget);
+            memory.release(budget);
+        }
+
+        var report = new Report(List.copyOf(results), System.nanoTime() - start);
+        Files.createDirectories(target);
+        report.write(target.resolve(REPORT_NAME));
+        return report;
+    }
+
+    /**
+     * Shut down the executors created by the converter, if any
+     */
+    @Override
+    public void close(){
+        if(owned) {
+            io.shutdown();
+            cpu.shutdown();
+        }
+    }
+
+    // Wait for the memory of the file to be available, then chain the three stages
+    private void submit(Path source, Path target, boolean toQoi, ConcurrentLinkedQueue<Result> results){
+        long pixels = pixelCount(source, toQoi);
+        long size = source.toFile().length();
+        // Encoded file, decoded raster, flat pixels and encoded output
+        long estimate = size + 13 * pixels;
+        int permits = (int) Math.min(budget, Math.max(1, (estimate + UNIT - 1) / UNIT));
+        memory.acquireUninterruptibly(permits);
+
+        long[] start = new long[1];
+        long[] written = new long[1];
+        try {
+            CompletableFuture.supplyAsync(() -> {
+                        start[0] = System.nanoTime();
+                        return read(source);
+                    }, io)
+                    .thenApplyAsync(content -> toQoi ? pngToQoi(content) : qoiToPng(content), cpu)
+                    .thenAcceptAsync(content -> written[0] = write(target, content), io)
+                    .whenComplete((ignored, error) -> {
+                        long nanos = start[0] == 0 ? 0 : System.nanoTime() - start[0];
+                        results.add(new Result(source, target, size, written[0], pixels, nanos,
+                                error == null ? null : message(error)));
+                        memory.release(permits);
+                    });
+        } catch (RejectedExecutionException e) {
+            // The later stages report a rejection through whenComplete, only the first one throws here
+            results.add(new Result(source, target, size, 0, pixels, 0, message(e)));
+            memory.release(permits);
+        }
+    }
+
+    private static byte[] pngToQoi(byte[] content){
+        try {
+            var image = ImageIO.read(new ByteArrayInputStream(content));
+            if(image == null) {
+                return Helper.fail("Not a \"PNG\" image");
+            }
+            return QOIEncoder.qoiFile(Helper.toPixels(image));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] qoiToPng(byte[] content){
+        var image = QOIDecoder.decodePixels(content);
+        var output = new ByteArrayOutputStream(content.length);
+        try {
+            Helper.writePng(image, Deflater.DEFAULT_COMPRESSION, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] read(Path source){
+        try {
+            return Files.readAllBytes(source);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long write(Path target, byte[] content){
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            Files.write(target, content);
+            return content.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Size of the image read from its header only, 0 if it cannot be read
+    private static long pixelCount(Path source, boolean png){
+        try {
+            if(png) {
+                try(var input = ImageIO.createImageInputStream(source.toFile())) {
+                    var readers = input == null ? null : ImageIO.getImageReaders(input);
+                    if(readers == null || !readers.hasNext()) {
+                        return 0;
+                    }
+                    var reader = readers.next();
+                    try {
+                        reader.setInput(input, true, true);
+                        return (long) reader.getWidth(0) * reader.getHeight(0);
+                    } finally {
+                        reader.dispose();
+                    }
+                }
+            }
+            try(InputStream input = Files.newInputStream(source)) {
+                byte[] header = input.readNBytes(QOISpecification.HEADER_SIZE);
+                if(header.length < QOISpecification.HEADER_SIZE) {
+                    return 0;
+                }
+                return (ArrayUtils.toInt(ArrayUtils.extract(header, 4, 4)) & 0xFFFFFFFFL)
+                        * (ArrayUtils.toInt(ArrayUtils.extract(header, 8, 4)) & 0xFFFFFFFFL);
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String message(Throwable error){
+        while(error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+    }
+
+}
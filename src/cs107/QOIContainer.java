@@ -0,0 +1,216 @@
+package cs107;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Multi-segment container of "Quite Ok Image" files, used to encode and decode on several cores.
+ * The image is split in horizontal bands, each band is encoded on its own as a complete
+ * "Quite Ok Image" file (fresh START_PIXEL and index), and the bands are stored one after
+ * the other behind an offset table.
+ * <pre>
+ * magic          "qoix"                 4 bytes
+ * width          big endian             4 bytes
+ * height         big endian             4 bytes
+ * channels                              1 byte
+ * color space                           1 byte
+ * band height    rows per band          4 bytes
+ * band count                            4 bytes
+ * offsets        start of each band     4 bytes per band, from the start of the container
+ * bands          "Quite Ok Image" files
+ * </pre>
+ * A container is not a "Quite Ok Image" file, QOIContainer::toQoi converts it back to one.
+ */
+public final class QOIContainer {
+
+    // Hide default constructor
+    private QOIContainer(){}
+
+    /**
+     * Magic Number of a container
+     */
+    public static final byte[] MAGIC = new byte[]{'q', 'o', 'i', 'x'};
+
+    /**
+     * Size of the fixed part of the container header, before the offset table
+     */
+    public static final int HEADER_SIZE = QOISpecification.HEADER_SIZE + 4 + 4;
+
+    // ==================================================================================
+    // ================================ ENCODING METHODS ================================
+    // ==================================================================================
+
+    /**
+     * Encode an image in bands on the common ForkJoinPool
+     * @param image (PixelBuffer) - Image to encode
+     * @param bandHeight (int) - Number of rows per band, the last band may be shorter
+     * @return (byte[]) - The container
+     * @throws AssertionError if the image is null or the band height is invalid
+     */
+    public static byte[] encode(PixelBuffer image, int bandHeight){
+        return encode(image, bandHeight, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Encode an image in bands, each band being a task of the given pool
+     * @param image (PixelBuffer) - Image to encode
+     * @param bandHeight (int) - Number of rows per band, the last band may be shorter
+     * @param pool (ForkJoinPool) - Pool running the encoding of the bands
+     * @return (byte[]) - The container
+     * @throws AssertionError if one of the parameters is null or the band height is invalid
+     */
+    public static byte[] encode(PixelBuffer image, int bandHeight, ForkJoinPool pool){
+        assert image != null;
+        assert pool != null;
+        assert bandHeight > 0;
+
+        int width = image.width();
+        int height = image.height();
+        int count = (height + bandHeight - 1) / bandHeight;
+
+        var tasks = new ArrayList<ForkJoinTask<byte[]>>(count);
+        for(int i = 0; i < count; ++i) {
+            int from = i * bandHeight;
+            int rows = Math.min(bandHeight, height - from);
+            tasks.add(pool.submit(() -> encodeBand(image, from, rows)));
+        }
+
+        byte[][] bands = new byte[count][];
+        long size = HEADER_SIZE + 4L * count;
+        for(int i = 0; i < count; ++i) {
+            bands[i] = tasks.get(i).join();
+            size += bands[i].length;
+        }
+        assert size <= Integer.MAX_VALUE - 8;
+
+        byte[] output = new byte[(int) size];
+        int position = QOIEncoder.writeHeader(width, height, image.channels(), image.colorSpace(), output, 0);
+        System.arraycopy(MAGIC, 0, output, 0, MAGIC.length);
+        position = ArrayUtils.writeInt(bandHeight, output, position);
+        position = ArrayUtils.writeInt(count, output, position);
+
+        int offset = position + 4 * count;
+        for(byte[] band : bands) {
+            position = ArrayUtils.writeInt(offset, output, position);
+            System.arraycopy(band, 0, output, offset, band.length);
+            offset += band.length;
+        }
+
+        return output;
+    }
+
+    // The worst case buffer of a band is the one of the context of the worker thread,
+    // reused by the next bands it encodes, so each band only allocates its own file
+    private static byte[] encodeBand(PixelBuffer image, int from, int rows){
+        int width = image.width();
+        int[] pixels;
+        int offset;
+        if(image.isContiguousARGB()) {
+            pixels = image.array();
+            offset = from * width;
+        } else {
+            pixels = new int[rows * width];
+            offset = 0;
+            for(int y = 0; y < rows; ++y) {
+                image.readRow(from + y, pixels, y * width);
+            }
+        }
+
+        var context = QOIEncoderContext.local();
+        context.encode(pixels, offset, width, rows, image.channels(), image.colorSpace());
+        return context.toByteArray();
+    }
+
+    // ==================================================================================
+    // ================================ DECODING METHODS ================================
+    // ==================================================================================
+
+    /**
+     * Tells if the given content is a container
+     * @param content (byte[]) - Content of a file
+     * @return (boolean) - true if the content starts with the magic number of a container
+     */
+    public static boolean isContainer(byte[] content){
+        assert content != null;
+        if(content.length < HEADER_SIZE) {
+            return false;
+        }
+        for(int i = 0; i < MAGIC.length; ++i) {
+            if(content[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode a container on the common ForkJoinPool
+     * @param content (byte[]) - The container
+     * @return (PixelBuffer) - Decoded image
+     * @throws AssertionError if the content is null or corrupted
+     */
+    public static PixelBuffer decode(byte[] content){
+        return decode(content, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decode a container, each band being a task of the given pool
+     * @param content (byte[]) - The container
+     * @param pool (ForkJoinPool) - Pool running the decoding of the bands
+     * @return (PixelBuffer) - Decoded image
+     * @throws AssertionError if one of the parameters is null or the content is corrupted
+     */
+    public static PixelBuffer decode(byte[] content, ForkJoinPool pool){
+        assert content != null;
+        assert pool != null;
+        assert isContainer(content);
+
+        int width = ArrayUtils.readInt(content, 4);
+        int height = ArrayUtils.readInt(content, 8);
+        int bandHeight = ArrayUtils.readInt(content, QOISpecification.HEADER_SIZE);
+        int count = ArrayUtils.readInt(content, QOISpecification.HEADER_SIZE + 4);
+        assert bandHeight > 0 && count == (height + bandHeight - 1) / bandHeight;
+
+        PixelBuffer image = PixelBuffer.allocate(width, height, content[12], content[13]);
+        int[] pixels = image.array();
+
+        var tasks = new ArrayList<ForkJoinTask<?>>(count);
+        for(int i = 0; i < count; ++i) {
+            int start = ArrayUtils.readInt(content, HEADER_SIZE + 4 * i);
+            int end = i + 1 < count ? ArrayUtils.readInt(content, HEADER_SIZE + 4 * (i + 1)) : content.length;
+            int from = i * bandHeight;
+            int rows = Math.min(bandHeight, height - from);
+            tasks.add(pool.submit(() -> decodeBand(content, start, end, pixels, from * width, width * rows)));
+        }
+        for(var task : tasks) {
+            task.join();
+        }
+
+        return image;
+    }
+
+    /**
+     * Convert a container to a standard "Quite Ok Image" file.
+     * The bands are decoded in parallel and the image is encoded again as a single stream.
+     * @param content (byte[]) - The container
+     * @return (byte[]) - The "Quite Ok Image" file of the same image
+     * @throws AssertionError if the content is null or corrupted
+     */
+    public static byte[] toQoi(byte[] content){
+        return QOIEncoder.qoiFile(decode(content));
+    }
+
+    private static void decodeBand(byte[] content, int start, int end, int[] output, int offset, int count){
+        assert start >= 0 && start + QOISpecification.HEADER_SIZE + QOISpecification.QOI_EOF.length <= end;
+        int[] header = QOIDecoder.decodeHeader(content, start);
+        assert header[0] * header[1] == count;
+        int eof = end - QOISpecification.QOI_EOF.length;
+        for(int i = 0; i < QOISpecification.QOI_EOF.length; ++i) {
+            assert content[eof + i] == QOISpecification.QOI_EOF[i];
+        }
+        int position = QOIDecoder.decodeData(content, start + QOISpecification.HEADER_SIZE, eof, output, offset, count);
+        assert position == eof;
+    }
+
+}
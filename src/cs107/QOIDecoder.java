@@ -1,5 +1,10 @@
 package cs107;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static cs107.Helper.Image;
 import static cs107.Helper.generateImage;
 
@@ -17,6 +22,9 @@ public final class QOIDecoder {
      */
     private QOIDecoder(){}
 
+    // Below this many pixels, filling a run in the loop beats the call to Arrays::fill
+    private static final int FILL_THRESHOLD = 16;
+
     // ==================================================================================
     // =========================== QUITE OK IMAGE HEADER ================================
     // ==================================================================================
@@ -284,6 +292,8 @@ public final class QOIDecoder {
      */
     public static Image decodeQoiFile(byte[] content){
         assert content != null;
+        var event = new QOIEvents.Decode();
+        event.begin();
         byte[] header = ArrayUtils.extract(content, 0, 14);
         byte signature[] = ArrayUtils.extract(content, content.length - 8, 8);
         assert ArrayUtils.equals(signature, QOISpecification.QOI_EOF);
@@ -299,7 +309,553 @@ public final class QOIDecoder {
         byte[][] dataImage = decodeData(ArrayUtils.extract(content, 14, content.length - 21), width, height);
         int[][] image = ArrayUtils.channelsToImage(dataImage, height, width);
 
+        event.commit(width, height, channels, content.length, 4L * width * height);
         return Helper.generateImage(image, channels, colorSpace);
     }
 
+    // ==================================================================================
+    // ========================= FLAT BUFFER DECODING METHODS ===========================
+    // ==================================================================================
+
+    /**
+     * Extract useful information from a "Quite Ok Image" header without copying it
+     * @param content (byte[]) - Buffer containing the header
+     * @param offset (int) - Index of the header in the buffer
+     * @return (int[]) - Array such as its content is {width, height, channels, color space}
+     * @throws AssertionError See handouts section 6.1
+     */
+    public static int[] decodeHeader(byte[] content, int offset){
+        assert content != null;
+        assert offset >= 0 && offset + QOISpecification.HEADER_SIZE <= content.length;
+
+        for(int i = 0; i < QOISpecification.QOI_MAGIC.length; ++i) {
+            assert content[offset + i] == QOISpecification.QOI_MAGIC[i];
+        }
+
+        byte channels = content[offset + 12];
+        byte colorSpace = content[offset + 13];
+        assert channels == QOISpecification.RGB || channels == QOISpecification.RGBA;
+        assert colorSpace == QOISpecification.ALL || colorSpace == QOISpecification.sRGB;
+
+        return new int[]{ArrayUtils.readInt(content, offset + 4), ArrayUtils.readInt(content, offset + 8), channels, colorSpace};
+    }
+
+    /**
+     * Decode the given chunks using the "Quite Ok Image" Protocol into ARGB packed pixels.
+     * The running pixel and the index are kept as primitives, no memory is allocated per pixel.
+     * Consecutive "QOI_OP_RUN" chunks are merged and written with a single Arrays::fill.
+     * @apiNote Produces exactly the same pixels as QOIDecoder::decodeData(byte[], int, int)
+     * @param input (byte[]) - Buffer containing the chunks
+     * @param position (int) - Index of the first chunk in the buffer
+     * @param limit (int) - Index in the buffer where the chunks stop
+     * @param output (int[]) - Buffer where to store the pixels
+     * @param count (int) - Number of pixels to decode
+     * @return (int) - Index in the input right after the last consumed chunk
+     * @throws AssertionError if one of the buffers is null or the bounds are invalid
+     */
+    public static int decodeData(byte[] input, int position, int limit, int[] output, int count){
+        return decodeData(input, position, limit, output, 0, count);
+    }
+
+    /**
+     * Decode the given chunks using the "Quite Ok Image" Protocol into a slice of a buffer
+     * of ARGB packed pixels
+     * @param input (byte[]) - Buffer containing the chunks
+     * @param position (int) - Index of the first chunk in the buffer
+     * @param limit (int) - Index in the buffer where the chunks stop
+     * @param output (int[]) - Buffer where to store the pixels
+     * @param offset (int) - Index in the output of the first decoded pixel
+     * @param count (int) - Number of pixels to decode
+     * @return (int) - Index in the input right after the last consumed chunk
+     * @throws AssertionError if one of the buffers is null or the bounds are invalid
+     */
+    public static int decodeData(byte[] input, int position, int limit, int[] output, int offset, int count){
+        return decodeData(input, position, limit, new int[64], output, offset, count);
+    }
+
+    /**
+     * Decode the given chunks into a slice of a buffer of ARGB packed pixels, reusing the given index
+     * @param input (byte[]) - Buffer containing the chunks
+     * @param position (int) - Index of the first chunk in the buffer
+     * @param limit (int) - Index in the buffer where the chunks stop
+     * @param hashTable (int[]) - Index of 64 pixels, reset before decoding
+     * @param output (int[]) - Buffer where to store the pixels
+     * @param offset (int) - Index in the output of the first decoded pixel
+     * @param count (int) - Number of pixels to decode
+     * @return (int) - Index in the input right after the last consumed chunk
+     * @throws AssertionError if one of the buffers is null or the bounds are invalid
+     */
+    static int decodeData(byte[] input, int position, int limit, int[] hashTable, int[] output, int offset, int count){
+        assert hashTable != null && hashTable.length == 64;
+        Arrays.fill(hashTable, 0);
+        hashTable[QOISpecification.hash(QOISpecification.START_PIXEL_ARGB)] = QOISpecification.START_PIXEL_ARGB;
+        return decodeData(input, position, limit, hashTable, QOISpecification.START_PIXEL_ARGB, output, offset, count);
+    }
+
+    /**
+     * Decode chunks from the middle of a file, starting from the state left by the chunks before them.
+     * The last run is cut when count pixels are decoded
+     * @apiNote Same loop as QOIDecoder::decodeData(ByteBuffer, int, int, int[], int, int[], int, int),
+     * indexing the array directly instead of going through the accessors of a buffer
+     * @param input (byte[]) - Buffer containing the chunks
+     * @param position (int) - Index of the first chunk in the buffer
+     * @param limit (int) - Index in the buffer where the chunks stop
+     * @param hashTable (int[]) - Index of 64 pixels before the first chunk, updated while decoding
+     * @param prev (int) - ARGB pixel decoded right before the first chunk
+     * @param output (int[]) - Buffer where to store the pixels
+     * @param offset (int) - Index in the output of the first decoded pixel
+     * @param count (int) - Number of pixels to decode
+     * @return (int) - Index in the input right after the last consumed chunk
+     * @throws AssertionError if one of the buffers is null or the bounds are invalid
+     */
+    static int decodeData(byte[] input, int position, int limit, int[] hashTable, int prev, int[] output, int offset, int count){
+        assert input != null;
+        assert output != null;
+        assert hashTable != null && hashTable.length == 64;
+        assert 0 <= position && position <= limit && limit <= input.length;
+        assert 0 <= offset && 0 <= count && offset + count <= output.length;
+
+        int pixel = offset;
+        int last = offset + count;
+        while(position < limit && pixel < last) {
+            int chunk = input[position++] & 0xFF;
+
+            switch(chunk >>> 6) {
+                case 0b00 -> prev = hashTable[chunk];
+                case 0b01 -> {
+                    int dr = ((chunk >>> 4) & 0b11) - 2;
+                    int dg = ((chunk >>> 2) & 0b11) - 2;
+                    int db = (chunk & 0b11) - 2;
+                    prev = withRGB(prev, (prev >>> 16) + dr, (prev >>> 8) + dg, prev + db);
+                }
+                case 0b10 -> {
+                    int dg = (chunk & 0b00_11_11_11) - 32;
+                    int data = input[position++] & 0xFF;
+                    int dr = dg + (data >>> 4) - 8;
+                    int db = dg + (data & 0b00_00_11_11) - 8;
+                    prev = withRGB(prev, (prev >>> 16) + dr, (prev >>> 8) + dg, prev + db);
+                }
+                default -> {
+                    if(chunk == (QOISpecification.QOI_OP_RGB_TAG & 0xFF)) {
+                        prev = withRGB(prev, input[position], input[position + 1], input[position + 2]);
+                        position += 3;
+                    } else if(chunk == (QOISpecification.QOI_OP_RGBA_TAG & 0xFF)) {
+                        prev = (input[position + 3] << 24) | withRGB(0, input[position], input[position + 1], input[position + 2]);
+                        position += 4;
+                    } else {
+                        // Merge the runs that follow into a single fill, as long as pixels are left after them
+                        int end = pixel + (chunk & 0b00_11_11_11) + 1;
+                        while(end < last && position < limit && isRun(input[position])) {
+                            end += (input[position++] & 0b00_11_11_11) + 1;
+                        }
+                        pixel = fill(output, pixel, Math.min(last, end), prev);
+                        continue;
+                    }
+                }
+            }
+
+            hashTable[QOISpecification.hash(prev)] = prev;
+            output[pixel++] = prev;
+        }
+
+        return position;
+    }
+
+    /**
+     * Decode a "Quite Ok Image" file into a caller supplied buffer of ARGB packed pixels
+     * @param content (byte[]) - Content of the file to decode
+     * @param output (int[]) - Buffer where to store the pixels, at least width * height long
+     * @return (int[]) - Array such as its content is {width, height, channels, color space}
+     * @throws AssertionError if content is null, corrupted or the output is too small
+     */
+    public static int[] decodeInto(byte[] content, int[] output){
+        return decodeInto(content, new int[64], output);
+    }
+
+    /**
+     * Decode a "Quite Ok Image" file into a caller supplied buffer of ARGB packed pixels,
+     * reusing the given index
+     * @param content (byte[]) - Content of the file to decode
+     * @param hashTable (int[]) - Index of 64 pixels, reset before decoding
+     * @param output (int[]) - Buffer where to store the pixels, at least width * height long
+     * @return (int[]) - Array such as its content is {width, height, channels, color space}
+     * @throws AssertionError if content is null, corrupted or the output is too small
+     */
+    static int[] decodeInto(byte[] content, int[] hashTable, int[] output){
+        assert content != null;
+        var event = new QOIEvents.Decode();
+        event.begin();
+
+        int[] header = decodeHeader(content, 0);
+        decodeChunks(content, header, hashTable, output);
+
+        event.commit(header[0], header[1], (byte) header[2], content.length, 4L * header[0] * header[1]);
+        return header;
+    }
+
+    /**
+     * Decode the chunks of a "Quite Ok Image" file whose header was already decoded,
+     * and check the "End Of File" that follows them
+     * @param content (byte[]) - Content of the file to decode
+     * @param header (int[]) - Header of the file, as given by QOIDecoder::decodeHeader
+     * @param hashTable (int[]) - Index of 64 pixels, reset before decoding
+     * @param output (int[]) - Buffer where to store the pixels, at least width * height long
+     * @throws AssertionError if content is null, corrupted or the output is too small
+     */
+    static void decodeChunks(byte[] content, int[] header, int[] hashTable, int[] output){
+        assert content != null;
+        assert header != null && header.length == 4;
+        assert output != null;
+        assert content.length >= QOISpecification.HEADER_SIZE + QOISpecification.QOI_EOF.length;
+
+        int end = content.length - QOISpecification.QOI_EOF.length;
+        for(int i = 0; i < QOISpecification.QOI_EOF.length; ++i) {
+            assert content[end + i] == QOISpecification.QOI_EOF[i];
+        }
+        assert (long) header[0] * header[1] <= output.length;
+
+        decodeData(content, QOISpecification.HEADER_SIZE, end, hashTable, output, 0, header[0] * header[1]);
+    }
+
+    /**
+     * Decode a "Quite Ok Image" file into an image of any layout and storage
+     * @apiNote Contiguous ARGB images are decoded in place, the others are converted row by row
+     * @param content (byte[]) - Content of the file to decode
+     * @param image (PixelBuffer) - Image with the size given in the header
+     * @throws AssertionError if content is null, corrupted or the image has another size
+     */
+    public static void decodeInto(byte[] content, PixelBuffer image){
+        assert content != null;
+        assert image != null;
+
+        if(image.isContiguousARGB()) {
+            int[] header = decodeInto(content, image.array());
+            assert header[0] == image.width() && header[1] == image.height();
+            return;
+        }
+        try(var decoder = new QOIStreamDecoder(new ByteArrayInputStream(content))) {
+            decoder.decode(image);
+        } catch (IOException e) {
+            Helper.fail("Corrupted \"Quite Ok Image\" content : %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Decode a "Quite Ok Image" file into a new flat image of ARGB packed pixels
+     * @param content (byte[]) - Content of the file to decode
+     * @return (PixelBuffer) - Decoded image
+     * @throws AssertionError if content is null or corrupted
+     */
+    public static PixelBuffer decodePixels(byte[] content){
+        assert content != null;
+        int[] header = decodeHeader(content, 0);
+        PixelBuffer image = PixelBuffer.allocate(header[0], header[1], (byte) header[2], (byte) header[3]);
+        decodeInto(content, image.array());
+        return image;
+    }
+
+    // ==================================================================================
+    // ========================= MAPPED BUFFER DECODING METHODS =========================
+    // ==================================================================================
+
+    /**
+     * Extract useful information from a "Quite Ok Image" header read in place in a buffer
+     * @param content (ByteBuffer) - Buffer containing the header, usually a mapped file
+     * @param offset (int) - Index of the header in the buffer
+     * @return (int[]) - Array such as its content is {width, height, channels, color space}
+     * @throws AssertionError See handouts section 6.1
+     */
+    public static int[] decodeHeader(ByteBuffer content, int offset){
+        assert content != null;
+        assert offset >= 0 && offset + QOISpecification.HEADER_SIZE <= content.limit();
+
+        for(int i = 0; i < QOISpecification.QOI_MAGIC.length; ++i) {
+            assert content.get(offset + i) == QOISpecification.QOI_MAGIC[i];
+        }
+
+        byte channels = content.get(offset + 12);
+        byte colorSpace = content.get(offset + 13);
+        assert channels == QOISpecification.RGB || channels == QOISpecification.RGBA;
+        assert colorSpace == QOISpecification.ALL || colorSpace == QOISpecification.sRGB;
+
+        return new int[]{ArrayUtils.readInt(content, offset + 4), ArrayUtils.readInt(content, offset + 8), channels, colorSpace};
+    }
+
+    /**
+     * Decode the chunks stored in a buffer into ARGB packed pixels. The buffer is read
+     * in place with absolute accesses, its position is left untouched.
+     * @apiNote Same as QOIDecoder::decodeData(byte[], int, int, int[], int) for off-heap
+     * and memory mapped content
+     * @param input (ByteBuffer) - Buffer containing the chunks
+     * @param position (int) - Index of the first chunk in the buffer
+     * @param limit (int) - Index in the buffer where the chunks stop
+     * @param output (int[]) - Buffer where to store the pixels
+     * @param count (int) - Number of pixels to decode
+     * @return (int) - Index in the input right after the last consumed chunk
+     * @throws AssertionError if one of the buffers is null or the bounds are invalid
+     */
+    public static int decodeData(ByteBuffer input, int position, int limit, int[] output, int count){
+        return decodeData(input, position, limit, new int[64], output, 0, count);
+    }
+
+    /**
+     * Decode the chunks stored in a buffer into a slice of a buffer of ARGB packed pixels,
+     * reusing the given index
+     * @param input (ByteBuffer) - Buffer containing the chunks
+     * @param position (int) - Index of the first chunk in the buffer
+     * @param limit (int) - Index in the buffer where the chunks stop
+     * @param hashTable (int[]) - Index of 64 pixels, reset before decoding
+     * @param output (int[]) - Buffer where to store the pixels
+     * @param offset (int) - Index in the output of the first decoded pixel
+     * @param count (int) - Number of pixels to decode
+     * @return (int) - Index in the input right after the last consumed chunk
+     * @throws AssertionError if one of the buffers is null or the bounds are invalid
+     */
+    static int decodeData(ByteBuffer input, int position, int limit, int[] hashTable, int[] output, int offset, int count){
+        assert hashTable != null && hashTable.length == 64;
+        Arrays.fill(hashTable, 0);
+        hashTable[QOISpecification.hash(QOISpecification.START_PIXEL_ARGB)] = QOISpecification.START_PIXEL_ARGB;
+        return decodeData(input, position, limit, hashTable, QOISpecification.START_PIXEL_ARGB, output, offset, count);
+    }
+
+    /**
+     * Decode chunks from the middle of a file, starting from the state left by the chunks before them.
+     * The last run is cut when count pixels are decoded. Buffers backed by an array are decoded by the
+     * byte[] loop, only direct and mapped buffers go through the absolute accessors
+     * @param input (ByteBuffer) - Buffer containing the chunks
+     * @param position (int) - Index of the first chunk in the buffer
+     * @param limit (int) - Index in the buffer where the chunks stop
+     * @param hashTable (int[]) - Index of 64 pixels before the first chunk, updated while decoding
+     * @param prev (int) - ARGB pixel decoded right before the first chunk
+     * @param output (int[]) - Buffer where to store the pixels
+     * @param offset (int) - Index in the output of the first decoded pixel
+     * @param count (int) - Number of pixels to decode
+     * @return (int) - Index in the input right after the last consumed chunk
+     * @throws AssertionError if one of the buffers is null or the bounds are invalid
+     */
+    static int decodeData(ByteBuffer input, int position, int limit, int[] hashTable, int prev, int[] output, int offset, int count){
+        assert input != null;
+        assert output != null;
+        assert hashTable != null && hashTable.length == 64;
+        assert 0 <= position && position <= limit && limit <= input.limit();
+        assert 0 <= offset && 0 <= count && offset + count <= output.length;
+
+        if(input.hasArray()) {
+            int shift = input.arrayOffset();
+            return decodeData(input.array(), position + shift, limit + shift, hashTable, prev, output, offset, count) - shift;
+        }
+
+        int pixel = offset;
+        int last = offset + count;
+        while(position < limit && pixel < last) {
+            int chunk = input.get(position++) & 0xFF;
+
+            switch(chunk >>> 6) {
+                case 0b00 -> prev = hashTable[chunk];
+                case 0b01 -> {
+                    int dr = ((chunk >>> 4) & 0b11) - 2;
+                    int dg = ((chunk >>> 2) & 0b11) - 2;
+                    int db = (chunk & 0b11) - 2;
+                    prev = withRGB(prev, (prev >>> 16) + dr, (prev >>> 8) + dg, prev + db);
+                }
+                case 0b10 -> {
+                    int dg = (chunk & 0b00_11_11_11) - 32;
+                    int data = input.get(position++) & 0xFF;
+                    int dr = dg + (data >>> 4) - 8;
+                    int db = dg + (data & 0b00_00_11_11) - 8;
+                    prev = withRGB(prev, (prev >>> 16) + dr, (prev >>> 8) + dg, prev + db);
+                }
+                default -> {
+                    if(chunk == (QOISpecification.QOI_OP_RGB_TAG & 0xFF)) {
+                        prev = withRGB(prev, input.get(position), input.get(position + 1), input.get(position + 2));
+                        position += 3;
+                    } else if(chunk == (QOISpecification.QOI_OP_RGBA_TAG & 0xFF)) {
+                        prev = (input.get(position + 3) << 24) | withRGB(0, input.get(position), input.get(position + 1), input.get(position + 2));
+                        position += 4;
+                    } else {
+                        // Merge the runs that follow into a single fill, as long as pixels are left after them
+                        int end = pixel + (chunk & 0b00_11_11_11) + 1;
+                        while(end < last && position < limit && isRun(input.get(position))) {
+                            end += (input.get(position++) & 0b00_11_11_11) + 1;
+                        }
+                        pixel = fill(output, pixel, Math.min(last, end), prev);
+                        continue;
+                    }
+                }
+            }
+
+            hashTable[QOISpecification.hash(prev)] = prev;
+            output[pixel++] = prev;
+        }
+
+        return position;
+    }
+
+    /**
+     * Decode a "Quite Ok Image" file held in a buffer, usually mapped with Helper::map,
+     * into a caller supplied buffer of ARGB packed pixels. Neither the header, the chunks
+     * nor the "End Of File" are copied on the heap.
+     * @param content (ByteBuffer) - Content of the file to decode, from index 0 to its limit
+     * @param output (int[]) - Buffer where to store the pixels, at least width * height long
+     * @return (int[]) - Array such as its content is {width, height, channels, color space}
+     * @throws AssertionError if content is null, corrupted or the output is too small
+     */
+    public static int[] decodeInto(ByteBuffer content, int[] output){
+        assert content != null;
+        assert output != null;
+        var event = new QOIEvents.Decode();
+        event.begin();
+        assert content.limit() >= QOISpecification.HEADER_SIZE + QOISpecification.QOI_EOF.length;
+
+        int end = content.limit() - QOISpecification.QOI_EOF.length;
+        for(int i = 0; i < QOISpecification.QOI_EOF.length; ++i) {
+            assert content.get(end + i) == QOISpecification.QOI_EOF[i];
+        }
+
+        int[] header = decodeHeader(content, 0);
+        assert (long) header[0] * header[1] <= output.length;
+
+        decodeData(content, QOISpecification.HEADER_SIZE, end, output, header[0] * header[1]);
+
+        event.commit(header[0], header[1], (byte) header[2], content.limit(), 4L * header[0] * header[1]);
+        return header;
+    }
+
+    // ==================================================================================
+    // ============================= CHUNK WALKING METHODS ==============================
+    // ==================================================================================
+
+    /**
+     * Receives the chunks of a file one by one, see QOIDecoder::walk
+     */
+    @FunctionalInterface
+    interface ChunkConsumer {
+        /**
+         * @param chunk (int) - First byte of the chunk, unsigned
+         * @param pixel (int) - ARGB pixel given by the chunk
+         * @param first (long) - Index of the first pixel given by the chunk
+         * @param count (int) - Number of pixels given by the chunk, more than 1 only for a "QOI_OP_RUN"
+         * @return (boolean) - false to stop the walk
+         */
+        boolean accept(int chunk, int pixel, long first, int count);
+    }
+
+    /**
+     * Decode a file chunk by chunk without storing the pixels, handing every chunk to a consumer.
+     * A "QOI_OP_RUN" chunk is handed at once with its length, so the walk costs the same time
+     * for every chunk whatever the number of pixels it gives
+     * @param content (byte[]) - Content of the file
+     * @param hashTable (int[]) - Index of 64 pixels, reset before the walk. The entry of a pixel
+     * is updated after the consumer received it, so the consumer sees the index the chunk was decoded with
+     * @param consumer (ChunkConsumer) - Receives the chunks in order
+     * @return (boolean) - false if the consumer stopped the walk, true once every pixel was walked
+     * @throws AssertionError if one of the parameters is null or the content is corrupted
+     */
+    static boolean walk(byte[] content, int[] hashTable, ChunkConsumer consumer){
+        assert content != null;
+        assert hashTable != null && hashTable.length == 64;
+        assert consumer != null;
+        assert content.length >= QOISpecification.HEADER_SIZE + QOISpecification.QOI_EOF.length;
+        int limit = content.length - QOISpecification.QOI_EOF.length;
+        for(int i = 0; i < QOISpecification.QOI_EOF.length; ++i) {
+            assert content[limit + i] == QOISpecification.QOI_EOF[i];
+        }
+        int[] header = decodeHeader(content, 0);
+        long total = (long) header[0] * header[1];
+
+        Arrays.fill(hashTable, 0);
+        int prev = QOISpecification.START_PIXEL_ARGB;
+        hashTable[QOISpecification.hash(prev)] = prev;
+
+        long pixel = 0;
+        int position = QOISpecification.HEADER_SIZE;
+        while(position < limit && pixel < total) {
+            int chunk = content[position++] & 0xFF;
+
+            switch(chunk >>> 6) {
+                case 0b00 -> prev = hashTable[chunk];
+                case 0b01 -> {
+                    int dr = ((chunk >>> 4) & 0b11) - 2;
+                    int dg = ((chunk >>> 2) & 0b11) - 2;
+                    int db = (chunk & 0b11) - 2;
+                    prev = withRGB(prev, (prev >>> 16) + dr, (prev >>> 8) + dg, prev + db);
+                }
+                case 0b10 -> {
+                    int dg = (chunk & 0b00_11_11_11) - 32;
+                    int data = content[position++] & 0xFF;
+                    int dr = dg + (data >>> 4) - 8;
+                    int db = dg + (data & 0b00_00_11_11) - 8;
+                    prev = withRGB(prev, (prev >>> 16) + dr, (prev >>> 8) + dg, prev + db);
+                }
+                default -> {
+                    if(chunk == (QOISpecification.QOI_OP_RGB_TAG & 0xFF)) {
+                        prev = withRGB(prev, content[position], content[position + 1], content[position + 2]);
+                        position += 3;
+                    } else if(chunk == (QOISpecification.QOI_OP_RGBA_TAG & 0xFF)) {
+                        prev = (content[position + 3] << 24) | withRGB(0, content[position], content[position + 1], content[position + 2]);
+                        position += 4;
+                    } else {
+                        int count = (int) Math.min((chunk & 0b00_11_11_11) + 1, total - pixel);
+                        if(!consumer.accept(chunk, prev, pixel, count)) {
+                            return false;
+                        }
+                        pixel += count;
+                        continue;
+                    }
+                }
+            }
+
+            if(!consumer.accept(chunk, prev, pixel, 1)) {
+                return false;
+            }
+            hashTable[QOISpecification.hash(prev)] = prev;
+            ++pixel;
+        }
+        assert pixel == total;
+
+        return true;
+    }
+
+    /**
+     * Replace the color channels of an ARGB pixel, keeping its alpha
+     * @param pixel (int) - ARGB pixel
+     * @param red (int) - New red channel, only the lowest 8 bits are used
+     * @param green (int) - New green channel, only the lowest 8 bits are used
+     * @param blue (int) - New blue channel, only the lowest 8 bits are used
+     * @return (int) - The new ARGB pixel
+     */
+    static int withRGB(int pixel, int red, int green, int blue){
+        return (pixel & 0xFF_00_00_00) | ((red & 0xFF) << 16) | ((green & 0xFF) << 8) | (blue & 0xFF);
+    }
+
+    /**
+     * Fill a range of pixels with the same value. Short ranges are filled in the loop,
+     * long ones with Arrays::fill which writes several pixels per store
+     * @param output (int[]) - Buffer of pixels
+     * @param from (int) - First index to fill
+     * @param to (int) - Index after the last one to fill
+     * @param pixel (int) - Value of the pixels
+     * @return (int) - to
+     */
+    static int fill(int[] output, int from, int to, int pixel){
+        if(to - from < FILL_THRESHOLD) {
+            while(from < to) {
+                output[from++] = pixel;
+            }
+        } else {
+            Arrays.fill(output, from, to, pixel);
+        }
+        return to;
+    }
+
+    /**
+     * Tells if a chunk is a "QOI_OP_RUN" chunk
+     * @param chunk (byte) - First byte of the chunk
+     * @return (boolean) - true if the tag is 0b11 and the chunk is neither "QOI_OP_RGB" nor "QOI_OP_RGBA"
+     */
+    static boolean isRun(byte chunk){
+        return (chunk & 0b11_00_00_00) == 0b11_00_00_00
+                && chunk != QOISpecification.QOI_OP_RGB_TAG && chunk != QOISpecification.QOI_OP_RGBA_TAG;
+    }
+
 }
\ No newline at end of file
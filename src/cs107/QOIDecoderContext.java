@@ -0,0 +1,103 @@
+package cs107;
+
+/**
+ * Reusable state of the "Quite Ok Image" decoder, for services decoding many small images.
+ * The index, the pixel buffer and the Flight Recorder event are kept from one image to the next,
+ * so once the buffer has grown to the largest image seen, decoding allocates nothing but the array
+ * of the 4 ints of the header it returns (32 bytes). The header is decoded once per image.
+ * A context is not thread safe: use one per thread, or the one given by QOIDecoderContext::local.
+ * @apiNote Produces exactly the same pixels as QOIDecoder::decodeInto
+ */
+public final class QOIDecoderContext {
+
+    /**
+     * Default number of bytes kept by a context between two images
+     */
+    public static final int DEFAULT_RETAINED_BYTES = 1 << 22;
+
+    private static final ThreadLocal<QOIDecoderContext> LOCAL = ThreadLocal.withInitial(QOIDecoderContext::new);
+
+    private final int[] hashTable = new int[64];
+    private final QOIEvents.Decode event = new QOIEvents.Decode();
+    private final int retainedBytes;
+    private int[] pixels = new int[0];
+
+    /**
+     * Create a context keeping at most DEFAULT_RETAINED_BYTES between two images
+     */
+    public QOIDecoderContext(){
+        this(DEFAULT_RETAINED_BYTES);
+    }
+
+    /**
+     * Create a context. A buffer larger than the bound is still allocated for a large image,
+     * but it is released at the next image that fits in the bound
+     * @param retainedBytes (int) - Number of bytes the pixel buffer may keep between two images
+     * @throws AssertionError if the bound is negative
+     */
+    public QOIDecoderContext(int retainedBytes){
+        assert retainedBytes >= 0;
+        this.retainedBytes = retainedBytes;
+    }
+
+    /**
+     * Context of the calling thread, created on first use
+     * @return (QOIDecoderContext) - The context, with the default bound
+     */
+    public static QOIDecoderContext local(){
+        return LOCAL.get();
+    }
+
+    // ==================================================================================
+    // ================================ DECODING METHODS ================================
+    // ==================================================================================
+
+    /**
+     * Decode a "Quite Ok Image" file into the pixel buffer of the context
+     * @param content (byte[]) - Content of the file to decode
+     * @return (int[]) - Array such as its content is {width, height, channels, color space},
+     * the pixels are the first width * height ints of QOIDecoderContext::pixels
+     * @throws AssertionError if content is null or corrupted
+     */
+    public int[] decode(byte[] content){
+        assert content != null;
+
+        event.begin();
+        int[] header = QOIDecoder.decodeHeader(content, 0);
+        long count = (long) header[0] * header[1];
+        assert count <= Integer.MAX_VALUE - 8;
+        long bytes = (long) pixels.length * Integer.BYTES;
+        if(pixels.length < count || (bytes > retainedBytes && count * Integer.BYTES <= retainedBytes)) {
+            pixels = new int[(int) count];
+        }
+        QOIDecoder.decodeChunks(content, header, hashTable, pixels);
+        event.commit(header[0], header[1], (byte) header[2], content.length, 4 * count);
+        return header;
+    }
+
+    /**
+     * Decode a "Quite Ok Image" file into a caller supplied buffer, reusing only the index
+     * @param content (byte[]) - Content of the file to decode
+     * @param output (int[]) - Buffer where to store the pixels, at least width * height long
+     * @return (int[]) - Array such as its content is {width, height, channels, color space}
+     * @throws AssertionError if content is null, corrupted or the output is too small
+     */
+    public int[] decodeInto(byte[] content, int[] output){
+        assert content != null;
+        event.begin();
+        int[] header = QOIDecoder.decodeHeader(content, 0);
+        QOIDecoder.decodeChunks(content, header, hashTable, output);
+        event.commit(header[0], header[1], (byte) header[2], content.length, 4L * header[0] * header[1]);
+        return header;
+    }
+
+    /**
+     * Buffer holding the pixels of the last file decoded by QOIDecoderContext::decode,
+     * overwritten by the next call
+     * @return (int[]) - The buffer, not a copy, possibly longer than the image
+     */
+    public int[] pixels(){
+        return pixels;
+    }
+
+}
@@ -1,5 +1,7 @@
 package cs107;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.sql.Array;
 import java.util.Arrays;
 import java.util.ArrayList;
@@ -275,6 +277,8 @@ public final class QOIEncoder {
      */
     public static byte[] qoiFile(Helper.Image image){
         assert image != null;
+        var event = new QOIEvents.Encode();
+        event.begin();
 
         byte[] header = qoiHeader(image);
 
@@ -284,7 +288,301 @@ public final class QOIEncoder {
 
         byte[] signature = QOISpecification.QOI_EOF;
 
-        return ArrayUtils.concat(header, data, signature);
+        byte[] file = ArrayUtils.concat(header, data, signature);
+        int width = intDataImage[0].length;
+        event.commit(width, intDataImage.length, image.channels(), 4L * width * intDataImage.length, file.length);
+        return file;
+    }
+
+    // ==================================================================================
+    // =========================== FLAT BUFFER ENCODING METHODS =========================
+    // ==================================================================================
+
+    /**
+     * Compute the worst-case size of a "Quite Ok Image" file, that is every pixel
+     * stored with the QOI_OP_RGBA schema
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @return (int) - Upper bound of the size of the file in bytes
+     * @throws AssertionError if width or height are invalid or the bound doesn't fit in an array
+     */
+    public static int maxFileSize(int width, int height){
+        assert width > 0 && height > 0;
+        long size = (long) width * height * 5 + QOISpecification.HEADER_SIZE + QOISpecification.QOI_EOF.length;
+        assert size <= Integer.MAX_VALUE - 8;
+
+        return (int) size;
+    }
+
+    /**
+     * Write a "Quite Ok Image" header in the given buffer
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @param output (byte[]) - Buffer where to write the header
+     * @param position (int) - Index in the buffer to start writing from
+     * @return (int) - Index in the buffer right after the header
+     * @throws AssertionError if the parameters are invalid or the buffer is too small
+     */
+    public static int writeHeader(int width, int height, byte channels, byte colorSpace, byte[] output, int position){
+        assert output != null;
+        assert width > 0 && height > 0;
+        assert channels == QOISpecification.RGB || channels == QOISpecification.RGBA;
+        assert colorSpace == QOISpecification.sRGB || colorSpace == QOISpecification.ALL;
+        assert position >= 0 && position + QOISpecification.HEADER_SIZE <= output.length;
+
+        for(byte m : QOISpecification.QOI_MAGIC) {
+            output[position++] = m;
+        }
+        position = ArrayUtils.writeInt(width, output, position);
+        position = ArrayUtils.writeInt(height, output, position);
+        output[position++] = channels;
+        output[position++] = colorSpace;
+
+        return position;
+    }
+
+    /**
+     * Encode the given ARGB pixels using the "Quite Ok Image" Protocol directly into
+     * the given buffer. No memory is allocated per pixel.
+     * @apiNote Produces exactly the same chunks as QOIEncoder::encodeData(byte[][])
+     * @param pixels (int[]) - ARGB packed pixels, row after row
+     * @param output (byte[]) - Buffer where to write the chunks
+     * @param position (int) - Index in the buffer to start writing from
+     * @return (int) - Index in the buffer right after the last written chunk
+     * @throws AssertionError if one of the buffers is null or the output can't hold the worst case
+     */
+    public static int encodeData(int[] pixels, byte[] output, int position){
+        assert pixels != null;
+        return encodeData(pixels, 0, pixels.length, output, position);
+    }
+
+    /**
+     * Encode a slice of the given ARGB pixels using the "Quite Ok Image" Protocol directly into
+     * the given buffer, as if the slice was a whole image
+     * @param pixels (int[]) - ARGB packed pixels, row after row
+     * @param offset (int) - Index of the first pixel to encode
+     * @param length (int) - Number of pixels to encode
+     * @param output (byte[]) - Buffer where to write the chunks
+     * @param position (int) - Index in the buffer to start writing from
+     * @return (int) - Index in the buffer right after the last written chunk
+     * @throws AssertionError if one of the buffers is null, the slice is invalid
+     * or the output can't hold the worst case
+     */
+    public static int encodeData(int[] pixels, int offset, int length, byte[] output, int position){
+        return encodeData(pixels, offset, length, new int[64], output, position);
+    }
+
+    /**
+     * Encode a slice of ARGB pixels as a whole image, reusing the given index
+     * @param pixels (int[]) - ARGB packed pixels, row after row
+     * @param offset (int) - Index of the first pixel to encode
+     * @param length (int) - Number of pixels to encode
+     * @param hashTable (int[]) - Index of 64 pixels, cleared before encoding
+     * @param output (byte[]) - Buffer where to write the chunks
+     * @param position (int) - Index in the buffer to start writing from
+     * @return (int) - Index in the buffer right after the last written chunk
+     * @throws AssertionError if one of the buffers is null, the slice is invalid
+     * or the output can't hold the worst case
+     */
+    static int encodeData(int[] pixels, int offset, int length, int[] hashTable, byte[] output, int position){
+        assert pixels != null;
+        assert output != null;
+        assert hashTable != null && hashTable.length == 64;
+        assert offset >= 0 && length >= 0 && offset + length <= pixels.length;
+        assert position >= 0 && (long) position + (long) length * 5 <= output.length;
+
+        Arrays.fill(hashTable, 0);
+        int prev = QOISpecification.START_PIXEL_ARGB;
+        int end = offset + length;
+
+        for(int i = offset; i < end; ++i) {
+            int pixel = pixels[i];
+
+            if(pixel == prev) {
+                // The whole run is measured at once and written in chunks of 62
+                int count = runLength(pixels, i, end);
+                i += count - 1;
+                for(; count >= 62; count -= 62) {
+                    output[position++] = (byte)(QOISpecification.QOI_OP_RUN_TAG | 61);
+                }
+                if(count > 0) {
+                    output[position++] = (byte)(QOISpecification.QOI_OP_RUN_TAG | (count - 1));
+                }
+                continue;
+            }
+
+            position = writeChunk(pixel, prev, hashTable, output, position);
+            prev = pixel;
+        }
+
+        return position;
+    }
+
+    /**
+     * Encode a whole "Quite Ok Image" file (header, chunks and "End Of File")
+     * into the given buffer
+     * @param pixels (int[]) - ARGB packed pixels, row after row
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @param output (byte[]) - Buffer where to write the file, at least QOIEncoder::maxFileSize bytes long
+     * @param position (int) - Index in the buffer to start writing from
+     * @return (int) - Index in the buffer right after the "End Of File"
+     * @throws AssertionError if the parameters are invalid or the buffer is too small
+     */
+    public static int encodeFile(int[] pixels, int width, int height, byte channels, byte colorSpace, byte[] output, int position){
+        assert pixels != null;
+        assert pixels.length == width * height;
+        return encodeFile(pixels, 0, width, height, channels, colorSpace, new int[64], output, position);
+    }
+
+    /**
+     * Encode a whole "Quite Ok Image" file from width * height pixels of a buffer,
+     * reusing the given index
+     * @param pixels (int[]) - ARGB packed pixels, row after row
+     * @param offset (int) - Index of the first pixel of the image in the buffer
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @param hashTable (int[]) - Index of 64 pixels, cleared before encoding
+     * @param output (byte[]) - Buffer where to write the file, at least QOIEncoder::maxFileSize bytes long
+     * @param position (int) - Index in the buffer to start writing from
+     * @return (int) - Index in the buffer right after the "End Of File"
+     * @throws AssertionError if the parameters are invalid or the buffer is too small
+     */
+    static int encodeFile(int[] pixels, int offset, int width, int height, byte channels, byte colorSpace, int[] hashTable, byte[] output, int position){
+        var event = new QOIEvents.Encode();
+        event.begin();
+        int start = position;
+
+        position = writeHeader(width, height, channels, colorSpace, output, position);
+        position = encodeData(pixels, offset, width * height, hashTable, output, position);
+        for(byte b : QOISpecification.QOI_EOF) {
+            output[position++] = b;
+        }
+
+        event.commit(width, height, channels, 4L * width * height, position - start);
+        return position;
+    }
+
+    /**
+     * Creates the representation in memory of the "Quite Ok Image" file from ARGB packed pixels
+     * @apiNote Byte for byte identical to QOIEncoder::qoiFile(Helper.Image)
+     * @param pixels (int[]) - ARGB packed pixels, row after row
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @return (byte[]) - Binary representation of the "Quite Ok File" of the image
+     * @throws AssertionError if the parameters are invalid
+     */
+    public static byte[] qoiFile(int[] pixels, int width, int height, byte channels, byte colorSpace){
+        byte[] output = new byte[maxFileSize(width, height)];
+        int length = encodeFile(pixels, width, height, channels, colorSpace, output, 0);
+
+        return Arrays.copyOf(output, length);
+    }
+
+    /**
+     * Creates the representation in memory of the "Quite Ok Image" file of an image in any layout
+     * @apiNote Contiguous ARGB images are encoded in place, the others are converted row by row
+     * @param image (PixelBuffer) - Image to encode
+     * @return (byte[]) - Binary representation of the "Quite Ok File" of the image
+     * @throws AssertionError if the image is null
+     */
+    public static byte[] qoiFile(PixelBuffer image){
+        assert image != null;
+
+        if(image.isContiguousARGB()) {
+            return qoiFile(image.array(), image.width(), image.height(), image.channels(), image.colorSpace());
+        }
+
+        var output = new ByteArrayOutputStream(maxFileSize(image.width(), image.height()));
+        try(var encoder = new QOIStreamEncoder(output, image.width(), image.height(), image.channels(), image.colorSpace())) {
+            encoder.write(image);
+        } catch (IOException e) {
+            Helper.fail("An error occurred while encoding : %s", e.getMessage());
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Write the chunk encoding a pixel that differs from the previous one,
+     * updating the index on the way. Runs are left to the caller.
+     * @param pixel (int) - ARGB pixel to encode
+     * @param prev (int) - ARGB previous pixel
+     * @param hashTable (int[]) - Index of the previously seen pixels
+     * @param output (byte[]) - Buffer where to write the chunk, with at least 5 bytes left
+     * @param position (int) - Index in the buffer to start writing from
+     * @return (int) - Index in the buffer right after the chunk
+     */
+    static int writeChunk(int pixel, int prev, int[] hashTable, byte[] output, int position){
+        int hashIndex = QOISpecification.hash(pixel);
+        if(hashTable[hashIndex] == pixel) {
+            output[position++] = (byte)(QOISpecification.QOI_OP_INDEX_TAG | hashIndex);
+        } else {
+            hashTable[hashIndex] = pixel;
+
+            if((pixel ^ prev) >>> 24 == 0) {
+                byte dr = (byte)((pixel >>> 16) - (prev >>> 16));
+                byte dg = (byte)((pixel >>> 8) - (prev >>> 8));
+                byte db = (byte)(pixel - prev);
+
+                if(-3 < dr && dr < 2 && -3 < dg && dg < 2 && -3 < db && db < 2) {
+                    output[position++] = (byte)(QOISpecification.QOI_OP_DIFF_TAG | ((dr + 2) << 4) | ((dg + 2) << 2) | (db + 2));
+                } else {
+                    byte drg = (byte)(dr - dg);
+                    byte dbg = (byte)(db - dg);
+
+                    if((-33 < dg && dg < 32) && (-9 < drg && drg < 8) && (-9 < dbg && dbg < 8)) {
+                        output[position++] = (byte)(QOISpecification.QOI_OP_LUMA_TAG | (dg + 32));
+                        output[position++] = (byte)(((drg + 8) << 4) | (dbg + 8));
+                    } else {
+                        output[position++] = QOISpecification.QOI_OP_RGB_TAG;
+                        output[position++] = (byte)(pixel >>> 16);
+                        output[position++] = (byte)(pixel >>> 8);
+                        output[position++] = (byte) pixel;
+                    }
+                }
+            } else {
+                output[position++] = QOISpecification.QOI_OP_RGBA_TAG;
+                output[position++] = (byte)(pixel >>> 16);
+                output[position++] = (byte)(pixel >>> 8);
+                output[position++] = (byte) pixel;
+                output[position++] = (byte)(pixel >>> 24);
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Length of the run of pixels equal to pixels[from]. After a few pixels compared one by one,
+     * the rest of the run is found by Arrays::mismatch between the pixels and themselves shifted
+     * by one, which the JVM compares several pixels at a time
+     * @param pixels (int[]) - ARGB packed pixels
+     * @param from (int) - Index of the first pixel of the run
+     * @param end (int) - Index after the last pixel that can be part of the run
+     * @return (int) - Number of pixels equal to pixels[from], starting at from, at least 1
+     */
+    static int runLength(int[] pixels, int from, int end){
+        int pixel = pixels[from];
+        int i = from + 1;
+        // Most runs are short, don't pay for the bulk comparison on them
+        for(int limit = Math.min(end, from + 8); i < limit; ++i) {
+            if(pixels[i] != pixel) {
+                return i - from;
+            }
+        }
+        if(i == end) {
+            return i - from;
+        }
+        int mismatch = Arrays.mismatch(pixels, i, end, pixels, i - 1, end - 1);
+        return (mismatch < 0 ? end : i + mismatch) - from;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package cs107;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Reusable state of the "Quite Ok Image" encoder, for services encoding many small images.
+ * The index and the output buffer are kept from one image to the next, so once the buffer
+ * has grown to the largest image seen, encoding allocates nothing but the files it returns.
+ * A context is not thread safe: use one per thread, or the one given by QOIEncoderContext::local.
+ * @apiNote Produces exactly the same files as QOIEncoder::qoiFile
+ */
+public final class QOIEncoderContext {
+
+    /**
+     * Default number of bytes kept by a context between two images
+     */
+    public static final int DEFAULT_RETAINED_BYTES = 1 << 22;
+
+    private static final ThreadLocal<QOIEncoderContext> LOCAL = ThreadLocal.withInitial(QOIEncoderContext::new);
+
+    private final int[] hashTable = new int[64];
+    private final int retainedBytes;
+    private byte[] buffer = new byte[0];
+    private int[] pixels = new int[0];
+    private int length = 0;
+
+    /**
+     * Create a context keeping at most DEFAULT_RETAINED_BYTES between two images
+     */
+    public QOIEncoderContext(){
+        this(DEFAULT_RETAINED_BYTES);
+    }
+
+    /**
+     * Create a context. A buffer larger than the bound is still allocated for a large image,
+     * but it is released at the next image that fits in the bound
+     * @param retainedBytes (int) - Number of bytes the buffers may keep between two images
+     * @throws AssertionError if the bound is negative
+     */
+    public QOIEncoderContext(int retainedBytes){
+        assert retainedBytes >= 0;
+        this.retainedBytes = retainedBytes;
+    }
+
+    /**
+     * Context of the calling thread, created on first use
+     * @return (QOIEncoderContext) - The context, with the default bound
+     */
+    public static QOIEncoderContext local(){
+        return LOCAL.get();
+    }
+
+    // ==================================================================================
+    // ================================ ENCODING METHODS ================================
+    // ==================================================================================
+
+    /**
+     * Encode a "Quite Ok Image" file into the buffer of the context
+     * @param pixels (int[]) - ARGB packed pixels, row after row, at least width * height long
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @return (int) - Size of the file, stored at the start of QOIEncoderContext::buffer
+     * @throws AssertionError if the parameters are invalid
+     */
+    public int encode(int[] pixels, int width, int height, byte channels, byte colorSpace){
+        return encode(pixels, 0, width, height, channels, colorSpace);
+    }
+
+    /**
+     * Encode a "Quite Ok Image" file from width * height pixels starting anywhere in a buffer,
+     * such as a band of a larger image
+     * @param pixels (int[]) - ARGB packed pixels, row after row
+     * @param offset (int) - Index of the first pixel of the image in the buffer
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @return (int) - Size of the file, stored at the start of QOIEncoderContext::buffer
+     * @throws AssertionError if the parameters are invalid
+     */
+    int encode(int[] pixels, int offset, int width, int height, byte channels, byte colorSpace){
+        assert pixels != null;
+        assert offset >= 0 && offset + (long) width * height <= pixels.length;
+
+        buffer = reuse(buffer, QOIEncoder.maxFileSize(width, height));
+        length = QOIEncoder.encodeFile(pixels, offset, width, height, channels, colorSpace, hashTable, buffer, 0);
+        return length;
+    }
+
+    /**
+     * Encode an image of any layout into the buffer of the context
+     * @apiNote Contiguous ARGB images are encoded in place, the others are first converted
+     * into a pixel buffer kept by the context
+     * @param image (PixelBuffer) - Image to encode
+     * @return (int) - Size of the file, stored at the start of QOIEncoderContext::buffer
+     * @throws AssertionError if the image is null
+     */
+    public int encode(PixelBuffer image){
+        assert image != null;
+
+        int width = image.width();
+        int height = image.height();
+        if(image.isContiguousARGB()) {
+            return encode(image.array(), width, height, image.channels(), image.colorSpace());
+        }
+        pixels = reuse(pixels, width * height);
+        for(int y = 0; y < height; ++y) {
+            image.readRow(y, pixels, y * width);
+        }
+        return encode(pixels, width, height, image.channels(), image.colorSpace());
+    }
+
+    /**
+     * Buffer holding the last encoded file, overwritten by the next call to encode
+     * @return (byte[]) - The buffer, not a copy, its first QOIEncoderContext::length bytes are the file
+     */
+    public byte[] buffer(){
+        return buffer;
+    }
+
+    /**
+     * Size of the last encoded file
+     * @return (int) - Number of bytes, 0 if nothing was encoded yet
+     */
+    public int length(){
+        return length;
+    }
+
+    /**
+     * Copy of the last encoded file
+     * @return (byte[]) - A new array holding exactly the file
+     */
+    public byte[] toByteArray(){
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Write the last encoded file to a stream
+     * @param output (OutputStream) - Stream where to write the file, not closed
+     * @throws IOException if the stream fails
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        assert output != null;
+        output.write(buffer, 0, length);
+    }
+
+    // Keep the array if it is large enough and within the bound, or if the new size exceeds the bound anyway
+    private byte[] reuse(byte[] array, int size){
+        if(array.length >= size && (array.length <= retainedBytes || size > retainedBytes)) {
+            return array;
+        }
+        return new byte[size];
+    }
+
+    private int[] reuse(int[] array, int size){
+        long bytes = (long) array.length * Integer.BYTES;
+        if(array.length >= size && (bytes <= retainedBytes || (long) size * Integer.BYTES > retainedBytes)) {
+            return array;
+        }
+        return new int[size];
+    }
+
+}
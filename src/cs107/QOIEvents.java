@@ -0,0 +1,153 @@
+package cs107;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events of the codec, so that the time spent encoding, decoding,
+ * reading and writing images shows up with the shape of the images in a recording.
+ * Every event has a duration and is only recorded above its threshold, 1 ms by default.
+ * The thresholds are settings like those of the JDK events: they can be changed in a ".jfc" file
+ * ({@code <event name="cs107.Encode"><setting name="threshold">0 ms</setting></event>})
+ * or on a recording ({@code recording.enable("cs107.Decode").withThreshold(Duration.ZERO)}).
+ * @apiNote When no recording is running the events are disabled and cost nothing
+ */
+public final class QOIEvents {
+
+    // Hide default constructor
+    private QOIEvents(){}
+
+    /**
+     * Fields shared by all the events of the codec
+     */
+    @Category({"cs107", "Quite Ok Image"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    abstract static class ImageEvent extends Event {
+
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Channels")
+        byte channels;
+
+        @Label("Input Bytes")
+        @DataAmount
+        long inputBytes;
+
+        @Label("Output Bytes")
+        @DataAmount
+        long outputBytes;
+
+        /**
+         * Set the fields and commit the event if it lasted longer than its threshold.
+         * The duration is measured again at each call, so an event may be begun and committed
+         * several times, like the one kept by QOIDecoderContext
+         * @param width (int) - Width of the image
+         * @param height (int) - Height of the image
+         * @param channels (byte) - Number of channels
+         * @param inputBytes (long) - Size of what was read
+         * @param outputBytes (long) - Size of what was produced
+         */
+        final void commit(int width, int height, byte channels, long inputBytes, long outputBytes){
+            end();
+            if(shouldCommit()) {
+                this.width = width;
+                this.height = height;
+                this.channels = channels;
+                this.inputBytes = inputBytes;
+                this.outputBytes = outputBytes;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Encoding of ARGB pixels into a "Quite Ok Image" file.
+     * The input is counted as 4 bytes per pixel. A QOIStreamEncoder records one event per batch
+     * of pixels, with the size of the whole image and the bytes of the batch
+     */
+    @Name("cs107.Encode")
+    @Label("QOI Encode")
+    @Description("Encoding of an image into a \"Quite Ok Image\" file")
+    static final class Encode extends ImageEvent {}
+
+    /**
+     * Decoding of a "Quite Ok Image" file into ARGB pixels.
+     * The output is counted as 4 bytes per pixel
+     */
+    @Name("cs107.Decode")
+    @Label("QOI Decode")
+    @Description("Decoding of a \"Quite Ok Image\" file into pixels")
+    static final class Decode extends ImageEvent {}
+
+    /**
+     * Reading of an image in a standard format (png, jpeg ...) with Helper::readImage
+     * or Helper::readPixels. The output is counted as 4 bytes per pixel
+     */
+    @Name("cs107.ReadImage")
+    @Label("Read Image")
+    @Description("Reading and decoding of an image in a standard format")
+    static final class ReadImage extends ImageEvent {
+
+        @Label("Path")
+        String path;
+    }
+
+    /**
+     * Writing of a "PNG" image with Helper::writeImage.
+     * The input is counted as 4 bytes per pixel
+     */
+    @Name("cs107.Write")
+    @Label("Write Image")
+    @Description("Encoding and writing of an image to the disk")
+    static final class Write extends ImageEvent {
+
+        @Label("Path")
+        String path;
+    }
+
+    /**
+     * Writing of raw bytes with Helper::write. The bytes may be any file,
+     * so unlike the other events it has no image fields
+     */
+    @Name("cs107.WriteFile")
+    @Label("Write File")
+    @Description("Writing of a file to the disk")
+    @Category({"cs107", "Quite Ok Image"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class WriteFile extends Event {
+
+        @Label("Path")
+        String path;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        /**
+         * Set the fields and commit the event if it lasted longer than its threshold
+         * @param path (String) - Path of the written file
+         * @param bytes (long) - Size of the file
+         */
+        void commit(String path, long bytes){
+            end();
+            if(shouldCommit()) {
+                this.path = path;
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+
+}
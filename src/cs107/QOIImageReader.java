@@ -0,0 +1,219 @@
+package cs107;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ImageIO reader of "Quite Ok Image" files, built on QOIStreamDecoder.
+ * The file is decoded row by row straight from the ImageInputStream, only the rows and columns
+ * selected by the source region and the subsampling of the ImageReadParam are stored,
+ * and the decoding stops after the last selected row.
+ * The header is read once from the position of the stream given to setInput and the chunks are
+ * decoded from where it ends, so the reader works on streams that only seek forward.
+ * Only a second read of the same input seeks back to the first chunk.
+ * @apiNote Found by ImageIO through QOIImageReaderSpi
+ */
+public final class QOIImageReader extends ImageReader {
+
+    private ImageInputStream stream;
+    private int[] header;
+    // Position of the first chunk in the stream, once the header was read
+    private long data;
+
+    QOIImageReader(ImageReaderSpi provider){
+        super(provider);
+    }
+
+    @Override
+    public void setInput(Object input, boolean seekForwardOnly, boolean ignoreMetadata){
+        super.setInput(input, seekForwardOnly, ignoreMetadata);
+        stream = (ImageInputStream) input;
+        header = null;
+    }
+
+    @Override
+    public int getNumImages(boolean allowSearch){
+        return 1;
+    }
+
+    @Override
+    public int getWidth(int imageIndex) throws IOException {
+        return header(imageIndex)[0];
+    }
+
+    @Override
+    public int getHeight(int imageIndex) throws IOException {
+        return header(imageIndex)[1];
+    }
+
+    /**
+     * Image types of the decoded pixels, packed ARGB ints first
+     * @param imageIndex (int) - Always 0
+     * @return (Iterator<ImageTypeSpecifier>) - TYPE_INT_ARGB and TYPE_INT_RGB, in the order
+     * matching the channels of the header
+     * @throws IOException if the header cannot be read
+     */
+    @Override
+    public Iterator<ImageTypeSpecifier> getImageTypes(int imageIndex) throws IOException {
+        var argb = ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_ARGB);
+        var rgb = ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_RGB);
+        return header(imageIndex)[2] == QOISpecification.RGBA ? List.of(argb, rgb).iterator() : List.of(rgb, argb).iterator();
+    }
+
+    @Override
+    public IIOMetadata getStreamMetadata(){
+        return null;
+    }
+
+    @Override
+    public IIOMetadata getImageMetadata(int imageIndex){
+        return null;
+    }
+
+    /**
+     * Decode the image, or the part of it selected by the parameters
+     * @param imageIndex (int) - Always 0
+     * @param param (ImageReadParam) - Source region, subsampling, destination and destination offset, may be null
+     * @return (BufferedImage) - The decoded image
+     * @throws IOException if the stream fails, ends too early or the file is corrupted
+     */
+    @Override
+    public BufferedImage read(int imageIndex, ImageReadParam param) throws IOException {
+        int[] header = header(imageIndex);
+        int width = header[0];
+        int height = header[1];
+
+        BufferedImage image = getDestination(param, getImageTypes(imageIndex), width, height);
+        var source = new Rectangle();
+        var destination = new Rectangle();
+        computeRegions(param, width, height, image, source, destination);
+        int periodX = param == null ? 1 : param.getSourceXSubsampling();
+        int periodY = param == null ? 1 : param.getSourceYSubsampling();
+        boolean packed = image.getType() == BufferedImage.TYPE_INT_ARGB || image.getType() == BufferedImage.TYPE_INT_RGB;
+        // The data elements of TYPE_INT_RGB have no alpha, the bits above blue must stay clear
+        int mask = image.getType() == BufferedImage.TYPE_INT_RGB ? 0x00_FF_FF_FF : 0xFF_FF_FF_FF;
+
+        // An abort only stops the read it was requested for
+        clearAbortRequest();
+        processImageStarted(imageIndex);
+        if(stream.getStreamPosition() != data) {
+            stream.seek(data);
+        }
+        try {
+            var decoder = new QOIStreamDecoder(new Input(stream, isSeekForwardOnly()), header);
+            int[] row = new int[width];
+            int[] pixels = new int[destination.width];
+            for(int i = 0; i < destination.height; ++i) {
+                int y = source.y + i * periodY;
+                while(decoder.nextRow() <= y) {
+                    decoder.readRow(row);
+                }
+                for(int k = 0, x = source.x; k < pixels.length; ++k, x += periodX) {
+                    pixels[k] = row[x] & mask;
+                }
+                if(packed) {
+                    image.getRaster().setDataElements(destination.x, destination.y + i, pixels.length, 1, pixels);
+                } else {
+                    image.setRGB(destination.x, destination.y + i, pixels.length, 1, pixels, 0, pixels.length);
+                }
+
+                if(abortRequested()) {
+                    processReadAborted();
+                    return image;
+                }
+                processImageProgress(100f * (i + 1) / destination.height);
+            }
+        } catch (EOFException e) {
+            throw new IIOException("Truncated \"Quite Ok Image\" file", e);
+        }
+        processImageComplete();
+
+        return image;
+    }
+
+    @Override
+    public void dispose(){
+        stream = null;
+        header = null;
+    }
+
+    // Read and check the header once, leaving the stream on the first chunk.
+    // The checks don't rely on assertions, which are usually disabled outside of the tests
+    private int[] header(int imageIndex) throws IOException {
+        if(imageIndex != 0) {
+            throw new IndexOutOfBoundsException("A \"Quite Ok Image\" file has a single image");
+        }
+        if(stream == null) {
+            throw new IllegalStateException("No input set");
+        }
+        if(header == null) {
+            byte[] content = new byte[QOISpecification.HEADER_SIZE];
+            try {
+                stream.readFully(content);
+            } catch (EOFException e) {
+                throw new IIOException("Truncated \"Quite Ok Image\" header", e);
+            }
+            for(int i = 0; i < QOISpecification.QOI_MAGIC.length; ++i) {
+                if(content[i] != QOISpecification.QOI_MAGIC[i]) {
+                    throw new IIOException("Not a \"Quite Ok Image\" file");
+                }
+            }
+            byte channels = content[12];
+            byte colorSpace = content[13];
+            if(channels != QOISpecification.RGB && channels != QOISpecification.RGBA) {
+                throw new IIOException("Corrupted \"Quite Ok Image\" header: " + channels + " channels");
+            }
+            if(colorSpace != QOISpecification.sRGB && colorSpace != QOISpecification.ALL) {
+                throw new IIOException("Corrupted \"Quite Ok Image\" header: color space " + colorSpace);
+            }
+            int[] decoded = QOIDecoder.decodeHeader(content, 0);
+            if(decoded[0] <= 0 || decoded[1] <= 0) {
+                throw new IIOException("Corrupted \"Quite Ok Image\" header: " + Integer.toUnsignedString(decoded[0])
+                        + " x " + Integer.toUnsignedString(decoded[1]) + " pixels");
+            }
+            data = stream.getStreamPosition();
+            header = decoded;
+        }
+        return header;
+    }
+
+    // View of an ImageInputStream as an InputStream, the image stream is not closed
+    private static final class Input extends InputStream {
+
+        private final ImageInputStream stream;
+        private final boolean forwardOnly;
+
+        Input(ImageInputStream stream, boolean forwardOnly){
+            this.stream = stream;
+            this.forwardOnly = forwardOnly;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return stream.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = stream.read(b, off, len);
+            // Let a cached stream drop what was already decoded
+            if(forwardOnly && n > 0) {
+                stream.flushBefore(stream.getStreamPosition());
+            }
+            return n;
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package cs107;
+
+import javax.imageio.ImageReader;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Service provider of QOIImageReader, so that ImageIO::read understands "Quite Ok Image" files.
+ * It is registered through META-INF/services/javax.imageio.spi.ImageReaderSpi.
+ */
+public final class QOIImageReaderSpi extends ImageReaderSpi {
+
+    static final String[] NAMES = {"qoi", "QOI"};
+    static final String[] SUFFIXES = {"qoi"};
+    static final String[] MIME_TYPES = {"image/qoi", "image/x-qoi"};
+    static final String VENDOR = "cs107";
+    static final String VERSION = "1.3";
+
+    public QOIImageReaderSpi(){
+        super(VENDOR, VERSION, NAMES, SUFFIXES, MIME_TYPES, QOIImageReader.class.getName(),
+                new Class<?>[]{ImageInputStream.class}, new String[]{QOIImageWriterSpi.class.getName()},
+                false, null, null, null, null,
+                false, null, null, null, null);
+    }
+
+    /**
+     * Tells if the source starts with the magic number of a "Quite Ok Image" file.
+     * The position of the stream is left unchanged
+     * @param source (Object) - Source of the image
+     * @return (boolean) - true if the source is an ImageInputStream starting with "qoif"
+     * @throws IOException if the stream fails
+     */
+    @Override
+    public boolean canDecodeInput(Object source) throws IOException {
+        if(!(source instanceof ImageInputStream stream)) {
+            return false;
+        }
+        byte[] magic = new byte[QOISpecification.QOI_MAGIC.length];
+        stream.mark();
+        try {
+            stream.readFully(magic);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            stream.reset();
+        }
+        return ArrayUtils.equals(magic, QOISpecification.QOI_MAGIC);
+    }
+
+    @Override
+    public ImageReader createReaderInstance(Object extension){
+        return new QOIImageReader(this);
+    }
+
+    @Override
+    public String getDescription(Locale locale){
+        return "\"Quite Ok Image\" reader";
+    }
+
+}
@@ -0,0 +1,148 @@
+package cs107;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Hashtable;
+
+/**
+ * ImageIO writer of "Quite Ok Image" files, built on QOIStreamEncoder.
+ * The pixels are read from the raster in bulk (see Helper::toPixels) and encoded straight
+ * to the ImageOutputStream. The source region and the subsampling of the ImageWriteParam are honored.
+ * @apiNote Found by ImageIO through QOIImageWriterSpi
+ */
+public final class QOIImageWriter extends ImageWriter {
+
+    QOIImageWriter(ImageWriterSpi provider){
+        super(provider);
+    }
+
+    @Override
+    public IIOMetadata getDefaultStreamMetadata(ImageWriteParam param){
+        return null;
+    }
+
+    @Override
+    public IIOMetadata getDefaultImageMetadata(ImageTypeSpecifier imageType, ImageWriteParam param){
+        return null;
+    }
+
+    @Override
+    public IIOMetadata convertStreamMetadata(IIOMetadata inData, ImageWriteParam param){
+        return null;
+    }
+
+    @Override
+    public IIOMetadata convertImageMetadata(IIOMetadata inData, ImageTypeSpecifier imageType, ImageWriteParam param){
+        return null;
+    }
+
+    /**
+     * Encode an image as a "Quite Ok Image" file. The file has 4 channels if the color model
+     * of the image has an alpha, 3 otherwise
+     * @param streamMetadata (IIOMetadata) - Ignored
+     * @param image (IIOImage) - Image to encode, rasters are not supported
+     * @param param (ImageWriteParam) - Source region and subsampling, may be null
+     * @throws IOException if the stream fails
+     */
+    @Override
+    public void write(IIOMetadata streamMetadata, IIOImage image, ImageWriteParam param) throws IOException {
+        if(getOutput() == null) {
+            throw new IllegalStateException("No output set");
+        }
+        if(image == null || image.hasRaster()) {
+            throw new IllegalArgumentException("Only a RenderedImage can be written");
+        }
+        var rendered = toBufferedImage(image.getRenderedImage());
+
+        var region = new Rectangle(0, 0, rendered.getWidth(), rendered.getHeight());
+        int periodX = 1;
+        int periodY = 1;
+        if(param != null) {
+            if(param.getSourceRegion() != null) {
+                region = region.intersection(param.getSourceRegion());
+            }
+            periodX = param.getSourceXSubsampling();
+            periodY = param.getSourceYSubsampling();
+            region.x += param.getSubsamplingXOffset();
+            region.y += param.getSubsamplingYOffset();
+            region.width -= param.getSubsamplingXOffset();
+            region.height -= param.getSubsamplingYOffset();
+        }
+        if(region.isEmpty()) {
+            throw new IllegalArgumentException("Empty source region");
+        }
+        int width = (region.width + periodX - 1) / periodX;
+        int height = (region.height + periodY - 1) / periodY;
+
+        var source = rendered;
+        if(region.x != 0 || region.y != 0 || region.width != rendered.getWidth() || region.height != rendered.getHeight()) {
+            source = rendered.getSubimage(region.x, region.y, region.width, region.height);
+        }
+        var pixels = Helper.toPixels(source);
+
+        processImageStarted(0);
+        var encoder = new QOIStreamEncoder(new Output((ImageOutputStream) getOutput()), width, height,
+                pixels.channels(), QOISpecification.sRGB);
+        if(periodX == 1 && periodY == 1) {
+            encoder.write(pixels);
+        } else {
+            int[] row = new int[width];
+            for(int i = 0; i < height; ++i) {
+                int y = i * periodY;
+                for(int k = 0, x = 0; k < width; ++k, x += periodX) {
+                    row[k] = pixels.getARGB(x, y);
+                }
+                encoder.write(row);
+            }
+        }
+        encoder.close();
+        processImageComplete();
+    }
+
+    // Give a BufferedImage view of any RenderedImage, copying its data if needed
+    private static BufferedImage toBufferedImage(RenderedImage image){
+        if(image instanceof BufferedImage buffered) {
+            return buffered;
+        }
+        var model = image.getColorModel();
+        var raster = model.createCompatibleWritableRaster(image.getWidth(), image.getHeight());
+        image.copyData(raster.createWritableTranslatedChild(image.getMinX(), image.getMinY()));
+        return new BufferedImage(model, raster, model.isAlphaPremultiplied(), new Hashtable<>());
+    }
+
+    // View of an ImageOutputStream as an OutputStream, the image stream is flushed but not closed
+    private static final class Output extends OutputStream {
+
+        private final ImageOutputStream stream;
+
+        Output(ImageOutputStream stream){
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            stream.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            stream.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.flush();
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package cs107;
+
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageOutputStream;
+import java.util.Locale;
+
+/**
+ * Service provider of QOIImageWriter, so that ImageIO::write can produce "Quite Ok Image" files.
+ * It is registered through META-INF/services/javax.imageio.spi.ImageWriterSpi.
+ */
+public final class QOIImageWriterSpi extends ImageWriterSpi {
+
+    public QOIImageWriterSpi(){
+        super(QOIImageReaderSpi.VENDOR, QOIImageReaderSpi.VERSION, QOIImageReaderSpi.NAMES, QOIImageReaderSpi.SUFFIXES,
+                QOIImageReaderSpi.MIME_TYPES, QOIImageWriter.class.getName(),
+                new Class<?>[]{ImageOutputStream.class}, new String[]{QOIImageReaderSpi.class.getName()},
+                false, null, null, null, null,
+                false, null, null, null, null);
+    }
+
+    /**
+     * Tells if an image can be written. Any image ImageIO can convert to ARGB can be,
+     * up to 4 bands of at most 8 bits
+     * @param type (ImageTypeSpecifier) - Type of the image
+     * @return (boolean) - true if the image can be written without losing precision
+     */
+    @Override
+    public boolean canEncodeImage(ImageTypeSpecifier type){
+        var sampleModel = type.getSampleModel();
+        if(sampleModel.getNumBands() > 4) {
+            return false;
+        }
+        for(int size : sampleModel.getSampleSize()) {
+            if(size > 8) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public ImageWriter createWriterInstance(Object extension){
+        return new QOIImageWriter(this);
+    }
+
+    @Override
+    public String getDescription(Locale locale){
+        return "\"Quite Ok Image\" writer";
+    }
+
+}
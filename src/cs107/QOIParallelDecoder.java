@@ -0,0 +1,329 @@
+package cs107;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * "Quite Ok Image" Decoder using several cores on standard single-stream files.
+ * <ol>
+ * <li>A serial scan of the tags splits the chunks in segments of about the same number
+ * of pixels. It only looks at the tags, so it's much cheaper than decoding.</li>
+ * <li>Every segment is decoded in parallel from an unknown state: the previous pixel
+ * and the index are not known yet. The decoder tracks which pixels and which entries
+ * of the index could be wrong because of that. As soon as a QOI_OP_RGB(A) chunk gives
+ * the previous pixel and the index has been fully rewritten, the rest of the segment
+ * is known to be exact.</li>
+ * <li>A serial pass then decodes again, from the real state, only the beginning of each
+ * segment up to its last pixel that could be wrong.</li>
+ * </ol>
+ * The alpha of the previous pixel at the start of a segment is speculated to be the one of the
+ * last QOI_OP_RGBA chunk seen by the scan (255 if there is none). If it isn't, the whole
+ * segment is decoded again during the third step.
+ * @apiNote Produces exactly the same pixels as QOIDecoder::decodeData
+ */
+public final class QOIParallelDecoder {
+
+    // Hide default constructor
+    private QOIParallelDecoder(){}
+
+    /**
+     * Smallest number of pixels in a segment, below it the parallel decoding doesn't pay off
+     */
+    public static final int MIN_SEGMENT_PIXELS = 1 << 16;
+
+    // ==================================================================================
+    // ================================ DECODING METHODS ================================
+    // ==================================================================================
+
+    /**
+     * Decode a "Quite Ok Image" file into a caller supplied buffer of ARGB packed pixels,
+     * on the common ForkJoinPool
+     * @param content (byte[]) - Content of the file to decode
+     * @param output (int[]) - Buffer where to store the pixels, at least width * height long
+     * @return (int[]) - Array such as its content is {width, height, channels, color space}
+     * @throws AssertionError if content is null, corrupted or the output is too small
+     */
+    public static int[] decodeInto(byte[] content, int[] output){
+        return decodeInto(content, output, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decode a "Quite Ok Image" file into a caller supplied buffer of ARGB packed pixels
+     * @param content (byte[]) - Content of the file to decode
+     * @param output (int[]) - Buffer where to store the pixels, at least width * height long
+     * @param pool (ForkJoinPool) - Pool decoding the segments
+     * @return (int[]) - Array such as its content is {width, height, channels, color space}
+     * @throws AssertionError if one of the parameters is null, content is corrupted or the output is too small
+     */
+    public static int[] decodeInto(byte[] content, int[] output, ForkJoinPool pool){
+        assert content != null;
+        assert output != null;
+        assert pool != null;
+        assert content.length >= QOISpecification.HEADER_SIZE + QOISpecification.QOI_EOF.length;
+        var event = new QOIEvents.Decode();
+        event.begin();
+
+        int end = content.length - QOISpecification.QOI_EOF.length;
+        for(int i = 0; i < QOISpecification.QOI_EOF.length; ++i) {
+            assert content[end + i] == QOISpecification.QOI_EOF[i];
+        }
+
+        int[] header = QOIDecoder.decodeHeader(content, 0);
+        assert (long) header[0] * header[1] <= output.length;
+
+        int count = header[0] * header[1];
+        int segmentPixels = Math.max(MIN_SEGMENT_PIXELS, count / (4 * pool.getParallelism()) + 1);
+        decodeData(content, QOISpecification.HEADER_SIZE, end, output, count, segmentPixels, pool);
+
+        event.commit(header[0], header[1], (byte) header[2], content.length, 4L * count);
+        return header;
+    }
+
+    /**
+     * Decode a "Quite Ok Image" file into a new flat image of ARGB packed pixels,
+     * on the common ForkJoinPool
+     * @param content (byte[]) - Content of the file to decode
+     * @return (PixelBuffer) - Decoded image
+     * @throws AssertionError if content is null or corrupted
+     */
+    public static PixelBuffer decodePixels(byte[] content){
+        assert content != null;
+        int[] header = QOIDecoder.decodeHeader(content, 0);
+        PixelBuffer image = PixelBuffer.allocate(header[0], header[1], (byte) header[2], (byte) header[3]);
+        decodeInto(content, image.array());
+        return image;
+    }
+
+    /**
+     * Decode the given chunks using the "Quite Ok Image" Protocol, in segments of about
+     * the given number of pixels decoded on the given pool
+     * @param input (byte[]) - Buffer containing the chunks
+     * @param position (int) - Index of the first chunk in the buffer
+     * @param limit (int) - Index in the buffer where the chunks stop
+     * @param output (int[]) - Buffer where to store the pixels
+     * @param count (int) - Number of pixels to decode
+     * @param segmentPixels (int) - Number of pixels per segment
+     * @param pool (ForkJoinPool) - Pool decoding the segments
+     * @throws AssertionError if one of the buffers is null or the bounds are invalid
+     */
+    public static void decodeData(byte[] input, int position, int limit, int[] output, int count, int segmentPixels, ForkJoinPool pool){
+        assert input != null;
+        assert output != null;
+        assert pool != null;
+        assert 0 <= position && position <= limit && limit <= input.length;
+        assert 0 <= count && count <= output.length;
+        assert segmentPixels > 0;
+
+        Segment[] segments = scan(input, position, limit, count, segmentPixels);
+        if(segments.length == 1) {
+            QOIDecoder.decodeData(input, position, limit, output, count);
+            return;
+        }
+
+        var tasks = new ArrayList<ForkJoinTask<?>>(segments.length);
+        for(int i = 0; i < segments.length; ++i) {
+            Segment segment = segments[i];
+            tasks.add(pool.submit(i == 0
+                    ? () -> decodeFirst(input, limit, output, segment)
+                    : () -> speculate(input, limit, output, segment)));
+        }
+        for(var task : tasks) {
+            task.join();
+        }
+
+        int[] hashTable = segments[0].hashTable;
+        for(int i = 1; i < segments.length; ++i) {
+            hashTable = repair(input, limit, output, segments[i], hashTable, output[segments[i].start - 1]);
+        }
+    }
+
+    // ==================================================================================
+    // ==================================== SEGMENTS ====================================
+    // ==================================================================================
+
+    // A run of chunks, and what its speculative decoding found out
+    private static final class Segment {
+        // Index of the first chunk in the input
+        final int position;
+        // Index of the first pixel of the segment
+        final int start;
+        // Index right after the last pixel of the segment
+        int end;
+        // Speculated alpha of the previous pixel at the start of the segment
+        final int alpha;
+        // Index of the last pixel that may be wrong, start - 1 if there is none
+        int lastTainted;
+        // Entries of the index that may be wrong at the end of the segment
+        long taintedEntries;
+        // Index at the end of the speculative decoding
+        int[] hashTable;
+
+        Segment(int position, int start, int alpha){
+            this.position = position;
+            this.start = start;
+            this.alpha = alpha;
+        }
+    }
+
+    // Split the chunks in segments starting at chunk boundaries, by looking at the tags only
+    private static Segment[] scan(byte[] input, int position, int limit, int count, int segmentPixels){
+        var segments = new ArrayList<Segment>();
+        int pixel = 0;
+        int next = 0;
+        int alpha = QOISpecification.START_PIXEL_ARGB >>> 24;
+        while(position < limit && pixel < count) {
+            if(pixel >= next) {
+                segments.add(new Segment(position, pixel, alpha));
+                next = pixel + segmentPixels;
+            }
+            int chunk = input[position] & 0xFF;
+            if(chunk == (QOISpecification.QOI_OP_RGB_TAG & 0xFF)) {
+                position += 4;
+                ++pixel;
+            } else if(chunk == (QOISpecification.QOI_OP_RGBA_TAG & 0xFF)) {
+                alpha = input[position + 4] & 0xFF;
+                position += 5;
+                ++pixel;
+            } else {
+                switch(chunk >>> 6) {
+                    case 0b10 -> {
+                        position += 2;
+                        ++pixel;
+                    }
+                    case 0b11 -> {
+                        position += 1;
+                        pixel += (chunk & 0b00_11_11_11) + 1;
+                    }
+                    default -> {
+                        position += 1;
+                        ++pixel;
+                    }
+                }
+            }
+        }
+
+        Segment[] result = segments.toArray(new Segment[0]);
+        for(int i = 0; i < result.length; ++i) {
+            result[i].end = i + 1 < result.length ? result[i + 1].start : Math.min(pixel, count);
+        }
+        return result;
+    }
+
+    // The first segment starts from the real state, nothing to speculate
+    private static void decodeFirst(byte[] input, int limit, int[] output, Segment segment){
+        int[] hashTable = new int[64];
+        QOIDecoder.decodeData(input, segment.position, limit, hashTable, output, segment.start, segment.end - segment.start);
+        segment.hashTable = hashTable;
+        segment.lastTainted = segment.start - 1;
+    }
+
+    // Decode a segment from an unknown state, keeping track of what may be wrong
+    private static void speculate(byte[] input, int limit, int[] output, Segment segment){
+        int[] hashTable = new int[64];
+        int prev = segment.alpha << 24;
+        boolean colorTainted = true;
+        boolean alphaTainted = false;
+        long taintedEntries = -1L;
+        int lastTainted = segment.start - 1;
+
+        int position = segment.position;
+        int pixel = segment.start;
+        int end = segment.end;
+
+        while(pixel < end && position < limit && (taintedEntries != 0 || colorTainted || alphaTainted)) {
+            int chunk = input[position++] & 0xFF;
+
+            switch(chunk >>> 6) {
+                case 0b00 -> {
+                    prev = hashTable[chunk];
+                    colorTainted = alphaTainted = (taintedEntries >>> chunk & 1) != 0;
+                    if(colorTainted) {
+                        // The real pixel comes back to its own entry, or to entry 0 if it was never set
+                        taintedEntries |= 1L | (1L << chunk);
+                        lastTainted = pixel;
+                        output[pixel++] = prev;
+                        continue;
+                    }
+                }
+                case 0b01 -> {
+                    int dr = ((chunk >>> 4) & 0b11) - 2;
+                    int dg = ((chunk >>> 2) & 0b11) - 2;
+                    int db = (chunk & 0b11) - 2;
+                    prev = QOIDecoder.withRGB(prev, (prev >>> 16) + dr, (prev >>> 8) + dg, prev + db);
+                }
+                case 0b10 -> {
+                    int dg = (chunk & 0b00_11_11_11) - 32;
+                    int data = input[position++] & 0xFF;
+                    int dr = dg + (data >>> 4) - 8;
+                    int db = dg + (data & 0b00_00_11_11) - 8;
+                    prev = QOIDecoder.withRGB(prev, (prev >>> 16) + dr, (prev >>> 8) + dg, prev + db);
+                }
+                default -> {
+                    if(chunk == (QOISpecification.QOI_OP_RGB_TAG & 0xFF)) {
+                        prev = QOIDecoder.withRGB(prev, input[position], input[position + 1], input[position + 2]);
+                        position += 3;
+                        colorTainted = false;
+                    } else if(chunk == (QOISpecification.QOI_OP_RGBA_TAG & 0xFF)) {
+                        prev = (input[position + 3] << 24) | QOIDecoder.withRGB(0, input[position], input[position + 1], input[position + 2]);
+                        position += 4;
+                        colorTainted = alphaTainted = false;
+                    } else {
+                        int stop = Math.min(end, pixel + (chunk & 0b00_11_11_11) + 1);
+                        while(pixel < stop) {
+                            output[pixel++] = prev;
+                        }
+                        if(colorTainted || alphaTainted) {
+                            lastTainted = pixel - 1;
+                        }
+                        continue;
+                    }
+                }
+            }
+
+            int hashIndex = QOISpecification.hash(prev);
+            hashTable[hashIndex] = prev;
+            if(colorTainted || alphaTainted) {
+                // The real pixel may have landed in any entry of the index
+                taintedEntries = -1L;
+                lastTainted = pixel;
+            } else {
+                taintedEntries &= ~(1L << hashIndex);
+            }
+            output[pixel++] = prev;
+        }
+
+        // Everything is known from here, finish as a plain decoder
+        QOIDecoder.decodeData(input, position, limit, hashTable, prev, output, pixel, end - pixel);
+
+        segment.hashTable = hashTable;
+        segment.taintedEntries = taintedEntries;
+        segment.lastTainted = lastTainted;
+    }
+
+    // Decode again the pixels of a segment that may be wrong, from the real state at its start,
+    // and return the real index at its end
+    private static int[] repair(byte[] input, int limit, int[] output, Segment segment, int[] hashTable, int prev){
+        int lastTainted = segment.lastTainted;
+        boolean speculationFailed = (prev >>> 24) != segment.alpha;
+        if(speculationFailed) {
+            lastTainted = segment.end - 1;
+        }
+
+        int[] real = Arrays.copyOf(hashTable, 64);
+        if(lastTainted >= segment.start) {
+            QOIDecoder.decodeData(input, segment.position, limit, real, prev,
+                    output, segment.start, lastTainted + 1 - segment.start);
+        }
+        if(!speculationFailed) {
+            for(int i = 0; i < 64; ++i) {
+                if((segment.taintedEntries >>> i & 1) == 0) {
+                    real[i] = segment.hashTable[i];
+                }
+            }
+        }
+        return real;
+    }
+
+}
@@ -0,0 +1,331 @@
+package cs107;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Sidecar index of a "Quite Ok Image" file, giving random access to its rows.
+ * Every rowInterval rows, the index records a checkpoint: the chunk boundary at or before
+ * the first pixel of the row, with the running pixel and the 64 entries of the hash table
+ * at that point. Decoding a band of rows then starts at the nearest checkpoint instead of
+ * the start of the file, so it costs time proportional to the rows asked for.
+ * The file itself is left untouched, the index is stored next to it.
+ * <pre>
+ * magic          "qoii"                 4 bytes
+ * width          big endian             4 bytes
+ * height         big endian             4 bytes
+ * channels                              1 byte
+ * color space                           1 byte
+ * file size      of the indexed file    8 bytes
+ * row interval                          4 bytes
+ * count          of checkpoints         4 bytes
+ * checkpoints    position (8 bytes), first pixel (8 bytes), running pixel (4 bytes),
+ *                hash table (64 * 4 bytes)
+ * </pre>
+ */
+public final class QOISeekIndex {
+
+    /**
+     * Magic Number of a sidecar index
+     */
+    public static final byte[] MAGIC = new byte[]{'q', 'o', 'i', 'i'};
+
+    /**
+     * Size of the fixed part of the index, before the checkpoints
+     */
+    public static final int HEADER_SIZE = QOISpecification.HEADER_SIZE + 8 + 4 + 4;
+
+    /**
+     * Size of a single checkpoint
+     */
+    public static final int CHECKPOINT_SIZE = 8 + 8 + 4 + 64 * 4;
+
+    private final int[] header;
+    private final long fileSize;
+    private final int rowInterval;
+
+    private final long[] positions;
+    private final long[] pixels;
+    private final int[] prevs;
+    private final int[][] hashTables;
+
+    private QOISeekIndex(int[] header, long fileSize, int rowInterval, long[] positions, long[] pixels, int[] prevs, int[][] hashTables){
+        this.header = header;
+        this.fileSize = fileSize;
+        this.rowInterval = rowInterval;
+        this.positions = positions;
+        this.pixels = pixels;
+        this.prevs = prevs;
+        this.hashTables = hashTables;
+    }
+
+    public int width(){
+        return header[0];
+    }
+
+    public int height(){
+        return header[1];
+    }
+
+    public int rowInterval(){
+        return rowInterval;
+    }
+
+    /**
+     * Number of checkpoints of the index
+     * @return (int) - One checkpoint every rowInterval rows, starting at the first row
+     */
+    public int size(){
+        return positions.length;
+    }
+
+    // ==================================================================================
+    // ================================ BUILDING METHODS ================================
+    // ==================================================================================
+
+    /**
+     * Index a "Quite Ok Image" file held in memory in a single decoding pass
+     * @param content (byte[]) - Content of the file
+     * @param rowInterval (int) - Number of rows between two checkpoints
+     * @return (QOISeekIndex) - Index of the file
+     * @throws AssertionError if the content is null or corrupted or the interval is invalid
+     */
+    public static QOISeekIndex build(byte[] content, int rowInterval){
+        assert content != null;
+        try {
+            return build(new ByteArrayInputStream(content), rowInterval);
+        } catch (IOException e) {
+            return Helper.fail("The file ends too early");
+        }
+    }
+
+    /**
+     * Index a "Quite Ok Image" file in a single decoding pass, reading it from its start
+     * @param file (SeekableByteChannel) - Channel of the file, moved to its start
+     * @param rowInterval (int) - Number of rows between two checkpoints
+     * @return (QOISeekIndex) - Index of the file
+     * @throws IOException if the underlying file fails or ends too early
+     * @throws AssertionError if the file is null or corrupted or the interval is invalid
+     */
+    public static QOISeekIndex build(SeekableByteChannel file, int rowInterval) throws IOException {
+        assert file != null;
+        file.position(0);
+        // The stream is not closed, the channel belongs to the caller
+        return build(Channels.newInputStream(file), rowInterval);
+    }
+
+    /**
+     * Index a "Quite Ok Image" file in a single decoding pass with a QOIStreamDecoder,
+     * so the file never has to fit in memory
+     * @param input (InputStream) - Stream positioned at the start of the file, not closed
+     * @param rowInterval (int) - Number of rows between two checkpoints
+     * @return (QOISeekIndex) - Index of the file
+     * @throws IOException if the underlying input fails or ends too early
+     * @throws AssertionError if the input is null, the file is corrupted or the interval is invalid
+     */
+    public static QOISeekIndex build(InputStream input, int rowInterval) throws IOException {
+        assert input != null;
+        assert rowInterval > 0;
+
+        var decoder = new QOIStreamDecoder(input);
+        int width = decoder.width();
+        int height = decoder.height();
+        int count = height == 0 ? 0 : (height - 1) / rowInterval + 1;
+        long[] positions = new long[count];
+        long[] pixels = new long[count];
+        int[] prevs = new int[count];
+        int[][] hashTables = new int[count][];
+
+        // A single run may cover the first pixel of several checkpoint rows
+        for(int i = 0; i < count; ++i) {
+            pixels[i] = decoder.skipChunks((long) i * rowInterval * width);
+            positions[i] = decoder.offset();
+            prevs[i] = decoder.lastPixel();
+            hashTables[i] = decoder.index();
+        }
+        decoder.skipChunks((long) width * height);
+        decoder.checkEOF();
+
+        int[] header = new int[]{width, height, decoder.channels(), decoder.colorSpace()};
+        return new QOISeekIndex(header, decoder.offset(), rowInterval, positions, pixels, prevs, hashTables);
+    }
+
+    // ==================================================================================
+    // ============================= SERIALIZATION METHODS ==============================
+    // ==================================================================================
+
+    /**
+     * Serialize the index, to be stored next to the file
+     * @return (byte[]) - Content of the sidecar file
+     */
+    public byte[] toBytes(){
+        int count = size();
+        byte[] output = new byte[HEADER_SIZE + count * CHECKPOINT_SIZE];
+        int position = QOIEncoder.writeHeader(header[0], header[1], (byte) header[2], (byte) header[3], output, 0);
+        System.arraycopy(MAGIC, 0, output, 0, MAGIC.length);
+        position = ArrayUtils.writeLong(fileSize, output, position);
+        position = ArrayUtils.writeInt(rowInterval, output, position);
+        position = ArrayUtils.writeInt(count, output, position);
+
+        for(int i = 0; i < count; ++i) {
+            position = ArrayUtils.writeLong(positions[i], output, position);
+            position = ArrayUtils.writeLong(pixels[i], output, position);
+            position = ArrayUtils.writeInt(prevs[i], output, position);
+            for(int entry : hashTables[i]) {
+                position = ArrayUtils.writeInt(entry, output, position);
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Read an index serialized with QOISeekIndex::toBytes
+     * @param content (byte[]) - Content of the sidecar file
+     * @return (QOISeekIndex) - The index
+     * @throws AssertionError if the content is null or corrupted
+     */
+    public static QOISeekIndex fromBytes(byte[] content){
+        assert content != null;
+        assert content.length >= HEADER_SIZE;
+        for(int i = 0; i < MAGIC.length; ++i) {
+            assert content[i] == MAGIC[i];
+        }
+
+        int[] header = new int[]{ArrayUtils.readInt(content, 4), ArrayUtils.readInt(content, 8), content[12], content[13]};
+        long fileSize = ArrayUtils.readLong(content, QOISpecification.HEADER_SIZE);
+        int rowInterval = ArrayUtils.readInt(content, QOISpecification.HEADER_SIZE + 8);
+        int count = ArrayUtils.readInt(content, QOISpecification.HEADER_SIZE + 12);
+        assert rowInterval > 0;
+        assert count == (header[1] == 0 ? 0 : (header[1] - 1) / rowInterval + 1);
+        assert content.length == HEADER_SIZE + (long) count * CHECKPOINT_SIZE;
+
+        long[] positions = new long[count];
+        long[] pixels = new long[count];
+        int[] prevs = new int[count];
+        int[][] hashTables = new int[count][];
+        int position = HEADER_SIZE;
+        for(int i = 0; i < count; ++i) {
+            positions[i] = ArrayUtils.readLong(content, position);
+            pixels[i] = ArrayUtils.readLong(content, position + 8);
+            prevs[i] = ArrayUtils.readInt(content, position + 16);
+            position += 20;
+            int[] hashTable = new int[64];
+            for(int k = 0; k < 64; ++k, position += 4) {
+                hashTable[k] = ArrayUtils.readInt(content, position);
+            }
+            hashTables[i] = hashTable;
+        }
+
+        return new QOISeekIndex(header, fileSize, rowInterval, positions, pixels, prevs, hashTables);
+    }
+
+    // ==================================================================================
+    // ================================ DECODING METHODS ================================
+    // ==================================================================================
+
+    /**
+     * Decode a band of rows, starting from the nearest checkpoint
+     * @param content (byte[]) - Content of the indexed file
+     * @param from (int) - First row to decode
+     * @param to (int) - Row after the last row to decode
+     * @return (int[]) - ARGB pixels of the rows, row after row
+     * @throws AssertionError if the content is null, isn't the indexed file or the rows are invalid
+     */
+    public int[] decodeRows(byte[] content, int from, int to){
+        return decodeRegion(content, 0, from, width(), to - from);
+    }
+
+    /**
+     * Decode a rectangular region of the image, starting from the nearest checkpoint
+     * @param content (byte[]) - Content of the indexed file
+     * @param x (int) - Column of the left side of the region
+     * @param y (int) - Row of the top side of the region
+     * @param w (int) - Width of the region
+     * @param h (int) - Height of the region
+     * @return (int[]) - ARGB pixels of the region, row after row
+     * @throws AssertionError if the content is null, isn't the indexed file or the region is invalid
+     */
+    public int[] decodeRegion(byte[] content, int x, int y, int w, int h){
+        assert content != null;
+        assert content.length == fileSize;
+        int checkpoint = checkpoint(y);
+        int start = (int) positions[checkpoint];
+        var input = new ByteArrayInputStream(content, start, content.length - start);
+        try {
+            return decodeRegion(input, checkpoint, x, y, w, h);
+        } catch (IOException e) {
+            return Helper.fail("The indexed file ends too early");
+        }
+    }
+
+    /**
+     * Decode a band of rows of a file, reading it from the nearest checkpoint only
+     * @param file (SeekableByteChannel) - Channel of the indexed file, moved to the checkpoint
+     * @param from (int) - First row to decode
+     * @param to (int) - Row after the last row to decode
+     * @return (int[]) - ARGB pixels of the rows, row after row
+     * @throws IOException if the underlying file fails or ends too early
+     * @throws AssertionError if the file is null, isn't the indexed file or the rows are invalid
+     */
+    public int[] decodeRows(SeekableByteChannel file, int from, int to) throws IOException {
+        return decodeRegion(file, 0, from, width(), to - from);
+    }
+
+    /**
+     * Decode a rectangular region of a file, reading it from the nearest checkpoint only
+     * @param file (SeekableByteChannel) - Channel of the indexed file, moved to the checkpoint
+     * @param x (int) - Column of the left side of the region
+     * @param y (int) - Row of the top side of the region
+     * @param w (int) - Width of the region
+     * @param h (int) - Height of the region
+     * @return (int[]) - ARGB pixels of the region, row after row
+     * @throws IOException if the underlying file fails or ends too early
+     * @throws AssertionError if the file is null, isn't the indexed file or the region is invalid
+     */
+    public int[] decodeRegion(SeekableByteChannel file, int x, int y, int w, int h) throws IOException {
+        assert file != null;
+        assert file.size() == fileSize;
+        int checkpoint = checkpoint(y);
+        file.position(positions[checkpoint]);
+        // The stream is not closed, the channel belongs to the caller
+        return decodeRegion(Channels.newInputStream(file), checkpoint, x, y, w, h);
+    }
+
+    // Last checkpoint at or before the first pixel of the given row
+    private int checkpoint(int y){
+        assert y >= 0 && y < height();
+        return y / rowInterval;
+    }
+
+    private int[] decodeRegion(InputStream input, int checkpoint, int x, int y, int w, int h) throws IOException {
+        int width = width();
+        assert x >= 0 && w >= 0 && x + w <= width;
+        assert h >= 0 && y + h <= height();
+
+        var decoder = new QOIStreamDecoder(input, header, pixels[checkpoint], prevs[checkpoint], hashTables[checkpoint]);
+
+        // Pixels outside of the region, from the checkpoint to its first pixel and then
+        // between two of its rows, are skipped without being stored
+        int[] region = new int[w * h];
+        long skip = (long) y * width + x - pixels[checkpoint];
+        for(int i = 0; i < h; ++i) {
+            skip(decoder, skip);
+            decoder.read(region, i * w, w);
+            skip = width - w;
+        }
+
+        return region;
+    }
+
+    // Runs are skipped in constant time, other chunks one pixel at a time
+    private static void skip(QOIStreamDecoder decoder, long count) throws IOException {
+        while(count > 0) {
+            count -= decoder.readRun(count);
+        }
+    }
+
+}
@@ -0,0 +1,321 @@
+package cs107;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chunk level statistics of "Quite Ok Image" files: number of chunks of every kind,
+ * distribution of the run lengths, hits and collisions in the index, size and time per megapixel.
+ * The codec itself is not instrumented, so it costs nothing when statistics are not wanted:
+ * they are computed by a separate walk over the chunks of the file, and only the encoding
+ * or decoding is timed. Statistics can be summed per class of assets with QOIStatistics::record,
+ * which publishes the sums through JMX.
+ */
+public final class QOIStatistics implements QOIStatisticsMXBean {
+
+    /**
+     * Result of an encoding, with its statistics
+     * @param content (byte[]) - The file
+     * @param statistics (QOIStatistics) - Statistics of the file, with the encoding time
+     */
+    public record Encoded(byte[] content, QOIStatistics statistics) {}
+
+    /**
+     * Result of a decoding, with its statistics
+     * @param image (PixelBuffer) - The image
+     * @param statistics (QOIStatistics) - Statistics of the file, with the decoding time
+     */
+    public record Decoded(PixelBuffer image, QOIStatistics statistics) {}
+
+    // Kinds of chunks, indices in chunks
+    private static final int RUN = 0;
+    private static final int INDEX = 1;
+    private static final int DIFF = 2;
+    private static final int LUMA = 3;
+    private static final int RGB = 4;
+    private static final int RGBA = 5;
+
+    private static final Map<String, QOIStatistics> CLASSES = new ConcurrentHashMap<>();
+
+    private long images;
+    private long pixels;
+    private long bytes;
+    private final long[] chunks = new long[6];
+    private final long[] runs = new long[32];
+    private long collisions;
+    private long encodeNanos;
+    private long encodedPixels;
+    private long decodeNanos;
+    private long decodedPixels;
+
+    /**
+     * Create empty statistics
+     */
+    public QOIStatistics(){}
+
+    // ==================================================================================
+    // ============================== MEASUREMENT METHODS ===============================
+    // ==================================================================================
+
+    /**
+     * Encode an image and compute the statistics of the file
+     * @param image (PixelBuffer) - Image to encode
+     * @return (Encoded) - The file and its statistics
+     * @throws AssertionError if the image is null
+     */
+    public static Encoded encode(PixelBuffer image){
+        long start = System.nanoTime();
+        byte[] content = QOIEncoder.qoiFile(image);
+        long nanos = System.nanoTime() - start;
+
+        var statistics = of(content);
+        statistics.encodeNanos = nanos;
+        statistics.encodedPixels = statistics.pixels;
+        return new Encoded(content, statistics);
+    }
+
+    /**
+     * Decode a file and compute its statistics
+     * @param content (byte[]) - Content of the file to decode
+     * @return (Decoded) - The image and the statistics of the file
+     * @throws AssertionError if content is null or corrupted
+     */
+    public static Decoded decode(byte[] content){
+        long start = System.nanoTime();
+        var image = QOIDecoder.decodePixels(content);
+        long nanos = System.nanoTime() - start;
+
+        var statistics = of(content);
+        statistics.decodeNanos = nanos;
+        statistics.decodedPixels = statistics.pixels;
+        return new Decoded(image, statistics);
+    }
+
+    /**
+     * Compute the statistics of a file, without timing and without decoding the pixels
+     * in a buffer. A collision is a pixel written outside of a run that could not be found
+     * in the index because its slot held another pixel.
+     * @param content (byte[]) - Content of the file
+     * @return (QOIStatistics) - Statistics of the file
+     * @throws AssertionError if content is null or corrupted
+     */
+    public static QOIStatistics of(byte[] content){
+        assert content != null;
+        int[] header = QOIDecoder.decodeHeader(content, 0);
+
+        var statistics = new QOIStatistics();
+        statistics.images = 1;
+        statistics.pixels = (long) header[0] * header[1];
+        statistics.bytes = content.length;
+
+        // The encoder starts with an empty index, so the slot of the start pixel only counts
+        // as occupied once a pixel was written in it
+        int[] hashTable = new int[64];
+        long[] occupied = new long[1];
+        long[] run = new long[1];
+        QOIDecoder.walk(content, hashTable, (chunk, pixel, first, count) -> {
+            if(QOIDecoder.isRun((byte) chunk)) {
+                ++statistics.chunks[RUN];
+                run[0] += count;
+                return true;
+            }
+            statistics.addRun(run[0]);
+            run[0] = 0;
+
+            int kind = switch(chunk >>> 6) {
+                case 0b00 -> INDEX;
+                case 0b01 -> DIFF;
+                case 0b10 -> LUMA;
+                default -> chunk == (QOISpecification.QOI_OP_RGB_TAG & 0xFF) ? RGB : RGBA;
+            };
+            ++statistics.chunks[kind];
+            int hash = QOISpecification.hash(pixel);
+            if((occupied[0] >>> hash & 1) != 0 && hashTable[hash] != pixel) {
+                ++statistics.collisions;
+            }
+            occupied[0] |= 1L << hash;
+            return true;
+        });
+        statistics.addRun(run[0]);
+
+        return statistics;
+    }
+
+    // Count a run of the given number of pixels in the histogram, consecutive "QOI_OP_RUN" chunks merged
+    private void addRun(long length){
+        if(length > 0) {
+            ++runs[63 - Long.numberOfLeadingZeros(length)];
+        }
+    }
+
+    // ==================================================================================
+    // ================================= JMX METHODS ====================================
+    // ==================================================================================
+
+    /**
+     * Add statistics to the sums of a class of assets. The sums are registered in the platform
+     * MBeanServer as "cs107:type=QOIStatistics,name=<asset class>" the first time the class is seen
+     * @param assetClass (String) - Name of the class of assets, for instance "icons" or "tiles"
+     * @param statistics (QOIStatistics) - Statistics of one or several images
+     * @return (QOIStatistics) - The sums of the class
+     * @throws AssertionError if one of the parameters is null
+     * @throws IllegalStateException if the sums cannot be registered
+     */
+    public static QOIStatistics record(String assetClass, QOIStatistics statistics){
+        assert assetClass != null;
+        assert statistics != null;
+
+        var sums = CLASSES.computeIfAbsent(assetClass, name -> {
+            var created = new QOIStatistics();
+            try {
+                var objectName = new ObjectName("cs107:type=QOIStatistics,name=" + ObjectName.quote(name));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(created, objectName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot register the statistics of " + name, e);
+            }
+            return created;
+        });
+        sums.add(statistics);
+        return sums;
+    }
+
+    /**
+     * Add other statistics to these ones
+     * @param other (QOIStatistics) - Statistics to add, left unchanged
+     * @throws AssertionError if other is null
+     */
+    public void add(QOIStatistics other){
+        assert other != null;
+        long[] otherChunks;
+        long[] otherRuns;
+        long[] values;
+        synchronized(other) {
+            otherChunks = other.chunks.clone();
+            otherRuns = other.runs.clone();
+            values = new long[]{other.images, other.pixels, other.bytes, other.collisions,
+                    other.encodeNanos, other.encodedPixels, other.decodeNanos, other.decodedPixels};
+        }
+        synchronized(this) {
+            for(int i = 0; i < chunks.length; ++i) {
+                chunks[i] += otherChunks[i];
+            }
+            for(int i = 0; i < runs.length; ++i) {
+                runs[i] += otherRuns[i];
+            }
+            images += values[0];
+            pixels += values[1];
+            bytes += values[2];
+            collisions += values[3];
+            encodeNanos += values[4];
+            encodedPixels += values[5];
+            decodeNanos += values[6];
+            decodedPixels += values[7];
+        }
+    }
+
+    @Override
+    public synchronized void reset(){
+        Arrays.fill(chunks, 0);
+        Arrays.fill(runs, 0);
+        images = pixels = bytes = collisions = 0;
+        encodeNanos = encodedPixels = decodeNanos = decodedPixels = 0;
+    }
+
+    // ==================================================================================
+    // ================================= GETTER METHODS =================================
+    // ==================================================================================
+
+    @Override
+    public synchronized long getImages(){
+        return images;
+    }
+
+    @Override
+    public synchronized long getPixels(){
+        return pixels;
+    }
+
+    @Override
+    public synchronized long getBytes(){
+        return bytes;
+    }
+
+    @Override
+    public synchronized long getRunChunks(){
+        return chunks[RUN];
+    }
+
+    @Override
+    public synchronized long getIndexChunks(){
+        return chunks[INDEX];
+    }
+
+    @Override
+    public synchronized long getDiffChunks(){
+        return chunks[DIFF];
+    }
+
+    @Override
+    public synchronized long getLumaChunks(){
+        return chunks[LUMA];
+    }
+
+    @Override
+    public synchronized long getRgbChunks(){
+        return chunks[RGB];
+    }
+
+    @Override
+    public synchronized long getRgbaChunks(){
+        return chunks[RGBA];
+    }
+
+    @Override
+    public synchronized long[] getRunLengthHistogram(){
+        int length = runs.length;
+        while(length > 0 && runs[length - 1] == 0) {
+            --length;
+        }
+        return Arrays.copyOf(runs, length);
+    }
+
+    @Override
+    public synchronized double getIndexHitRate(){
+        long written = chunks[INDEX] + chunks[DIFF] + chunks[LUMA] + chunks[RGB] + chunks[RGBA];
+        return written == 0 ? 0 : (double) chunks[INDEX] / written;
+    }
+
+    @Override
+    public synchronized double getCollisionRate(){
+        long written = chunks[INDEX] + chunks[DIFF] + chunks[LUMA] + chunks[RGB] + chunks[RGBA];
+        return written == 0 ? 0 : (double) collisions / written;
+    }
+
+    @Override
+    public synchronized double getBytesPerMegapixel(){
+        return pixels == 0 ? 0 : bytes * 1e6 / pixels;
+    }
+
+    @Override
+    public synchronized double getEncodeNanosPerMegapixel(){
+        return encodedPixels == 0 ? 0 : encodeNanos * 1e6 / encodedPixels;
+    }
+
+    @Override
+    public synchronized double getDecodeNanosPerMegapixel(){
+        return decodedPixels == 0 ? 0 : decodeNanos * 1e6 / decodedPixels;
+    }
+
+    @Override
+    public synchronized String toString(){
+        return String.format("%d images, %d pixels, %d bytes : run %d, index %d, diff %d, luma %d, rgb %d, rgba %d, "
+                        + "index hits %.1f%%, collisions %.1f%%, %.0f bytes/MP",
+                images, pixels, bytes, chunks[RUN], chunks[INDEX], chunks[DIFF], chunks[LUMA], chunks[RGB], chunks[RGBA],
+                100 * getIndexHitRate(), 100 * getCollisionRate(), getBytesPerMegapixel());
+    }
+
+}
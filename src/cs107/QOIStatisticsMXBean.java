@@ -0,0 +1,59 @@
+package cs107;
+
+/**
+ * Management interface of the statistics accumulated for one class of assets,
+ * registered as "cs107:type=QOIStatistics,name=<asset class>" by QOIStatistics::record
+ */
+public interface QOIStatisticsMXBean {
+
+    /** @return (long) - Number of images recorded */
+    long getImages();
+
+    /** @return (long) - Number of pixels of all the images */
+    long getPixels();
+
+    /** @return (long) - Number of bytes of all the files */
+    long getBytes();
+
+    /** @return (long) - Number of "QOI_OP_RUN" chunks */
+    long getRunChunks();
+
+    /** @return (long) - Number of "QOI_OP_INDEX" chunks */
+    long getIndexChunks();
+
+    /** @return (long) - Number of "QOI_OP_DIFF" chunks */
+    long getDiffChunks();
+
+    /** @return (long) - Number of "QOI_OP_LUMA" chunks */
+    long getLumaChunks();
+
+    /** @return (long) - Number of "QOI_OP_RGB" chunks */
+    long getRgbChunks();
+
+    /** @return (long) - Number of "QOI_OP_RGBA" chunks */
+    long getRgbaChunks();
+
+    /** @return (long[]) - Number of runs of length 1, 2-3, 4-7, ..., consecutive "QOI_OP_RUN" chunks merged */
+    long[] getRunLengthHistogram();
+
+    /** @return (double) - Part of the pixels outside runs found in the index */
+    double getIndexHitRate();
+
+    /** @return (double) - Part of the pixels outside runs whose slot of the index held another pixel */
+    double getCollisionRate();
+
+    /** @return (double) - Size of the files per million pixels */
+    double getBytesPerMegapixel();
+
+    /** @return (double) - Time spent encoding per million pixels encoded */
+    double getEncodeNanosPerMegapixel();
+
+    /** @return (double) - Time spent decoding per million pixels decoded */
+    double getDecodeNanosPerMegapixel();
+
+    /**
+     * Forget everything recorded so far
+     */
+    void reset();
+
+}
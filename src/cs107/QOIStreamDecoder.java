@@ -0,0 +1,399 @@
+package cs107;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * "Quite Ok Image" Decoder reading from a stream.
+ * The file goes through a small fixed buffer and the pixels are handed out
+ * row by row (or in batches of any size), so the memory used doesn't depend
+ * on the size of the image. Runs and chunks split between two refills of the buffer
+ * are carried over between calls.
+ * @apiNote Produces exactly the same pixels as QOIDecoder::decodeQoiFile
+ */
+public final class QOIStreamDecoder implements Closeable {
+
+    /**
+     * Default size of the input buffer
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final InputStream input;
+    private final byte[] buffer;
+    private int position = 0;
+    private int limit = 0;
+
+    private final int width;
+    private final int height;
+    private final byte channels;
+    private final byte colorSpace;
+
+    private final int[] hashTable = new int[64];
+    private int prev = QOISpecification.START_PIXEL_ARGB;
+    private int run = 0;
+    private long decoded = 0;
+
+    private final QOIEvents.Decode event = new QOIEvents.Decode();
+    private long consumed = 0;
+
+    /**
+     * Create a decoder reading from the given stream and read the header
+     * @param input (InputStream) - Stream to read the file from
+     * @throws IOException if the underlying input fails or ends before the header
+     * @throws AssertionError if the input is null or the header is corrupted
+     */
+    public QOIStreamDecoder(InputStream input) throws IOException {
+        this(input, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a decoder reading from the given channel and read the header
+     * @param input (ReadableByteChannel) - Channel to read the file from
+     * @throws IOException if the underlying input fails or ends before the header
+     * @throws AssertionError if the input is null or the header is corrupted
+     */
+    public QOIStreamDecoder(ReadableByteChannel input) throws IOException {
+        this(Channels.newInputStream(input), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a decoder reading from the given stream through a buffer of the given size
+     * and read the header
+     * @param input (InputStream) - Stream to read the file from
+     * @param bufferSize (int) - Size of the input buffer, at least the size of the header
+     * @throws IOException if the underlying input fails or ends before the header
+     * @throws AssertionError if the input is null, the header is corrupted or the buffer too small
+     */
+    public QOIStreamDecoder(InputStream input, int bufferSize) throws IOException {
+        assert input != null;
+        assert bufferSize >= QOISpecification.HEADER_SIZE;
+
+        event.begin();
+        this.input = input;
+        this.buffer = new byte[bufferSize];
+
+        fill(QOISpecification.HEADER_SIZE);
+        int[] header = QOIDecoder.decodeHeader(buffer, position);
+        position += QOISpecification.HEADER_SIZE;
+
+        this.width = header[0];
+        this.height = header[1];
+        this.channels = (byte) header[2];
+        this.colorSpace = (byte) header[3];
+
+        hashTable[QOISpecification.hash(prev)] = prev;
+    }
+
+    /**
+     * Create a decoder for the chunks of a file whose header was already read by the caller
+     * @param input (InputStream) - Stream positioned on the first chunk
+     * @param header (int[]) - Decoded header of the file, {width, height, channels, color space}
+     */
+    QOIStreamDecoder(InputStream input, int[] header){
+        this(input, header, 0, QOISpecification.START_PIXEL_ARGB, new int[64]);
+        hashTable[QOISpecification.hash(prev)] = prev;
+    }
+
+    /**
+     * Create a decoder resuming in the middle of a file, from a state saved at a chunk boundary
+     * @param input (InputStream) - Stream positioned on the next chunk to decode
+     * @param header (int[]) - Decoded header of the file, {width, height, channels, color space}
+     * @param decoded (long) - Number of pixels decoded before the next chunk
+     * @param prev (int) - ARGB previous pixel
+     * @param hashTable (int[]) - Index of the previously seen pixels, copied
+     */
+    QOIStreamDecoder(InputStream input, int[] header, long decoded, int prev, int[] hashTable){
+        assert input != null;
+        assert header != null && header.length == 4;
+        assert hashTable != null && hashTable.length == 64;
+
+        event.begin();
+        this.input = input;
+        this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+        this.width = header[0];
+        this.height = header[1];
+        this.channels = (byte) header[2];
+        this.colorSpace = (byte) header[3];
+        this.decoded = decoded;
+        this.prev = prev;
+        System.arraycopy(hashTable, 0, this.hashTable, 0, 64);
+    }
+
+    public int width(){
+        return width;
+    }
+
+    public int height(){
+        return height;
+    }
+
+    public byte channels(){
+        return channels;
+    }
+
+    public byte colorSpace(){
+        return colorSpace;
+    }
+
+    /**
+     * Index of the next row to be decoded
+     * @return (int) - Row of the next pixel to be decoded
+     */
+    public int nextRow(){
+        return (int) (decoded / width);
+    }
+
+    /**
+     * Decode the next row of the image
+     * @param row (int[]) - Buffer where to store the ARGB pixels, at least width long
+     * @return (boolean) - false if all the rows were already decoded, true otherwise
+     * @throws IOException if the underlying input fails or ends too early
+     * @throws AssertionError if the row is null or too small
+     */
+    public boolean readRow(int[] row) throws IOException {
+        assert row != null && row.length >= width;
+        if(decoded == (long) width * height) {
+            return false;
+        }
+        read(row, 0, width);
+        return true;
+    }
+
+    /**
+     * Decode all the remaining rows, handing them to the given callback.
+     * The same row buffer is reused for every call.
+     * @param rows (ObjIntConsumer<int[]>) - Callback receiving each row and its index
+     * @throws IOException if the underlying input fails or ends too early
+     * @throws AssertionError if the callback is null or the "End Of File" is corrupted
+     */
+    public void decode(ObjIntConsumer<int[]> rows) throws IOException {
+        assert rows != null;
+        int[] row = new int[width];
+        for(int y = nextRow(); readRow(row); ++y) {
+            rows.accept(row, y);
+        }
+        checkEOF();
+    }
+
+    /**
+     * Decode all the remaining rows into an image, converting them to its layout on the way
+     * @param image (PixelBuffer) - Image with the same width and height as the decoded one
+     * @throws IOException if the underlying input fails or ends too early
+     * @throws AssertionError if the image is null, has another size or the "End Of File" is corrupted
+     */
+    public void decode(PixelBuffer image) throws IOException {
+        assert image != null;
+        assert image.width() == width && image.height() == height;
+
+        if(image.isContiguousARGB()) {
+            int start = nextRow() * width;
+            read(image.array(), start, width * height - start);
+            checkEOF();
+            return;
+        }
+        decode((row, y) -> image.writeRow(y, row, 0));
+    }
+
+    /**
+     * Decode the next pixels of the image
+     * @param pixels (int[]) - Buffer where to store the ARGB pixels
+     * @param offset (int) - Index in the buffer of the first pixel
+     * @param length (int) - Number of pixels to decode
+     * @throws IOException if the underlying input fails or ends too early
+     * @throws AssertionError if the buffer is null, the bounds are invalid
+     * or more pixels than width * height are requested
+     */
+    public void read(int[] pixels, int offset, int length) throws IOException {
+        assert pixels != null;
+        assert offset >= 0 && length >= 0 && offset + length <= pixels.length;
+        assert decoded + length <= (long) width * height;
+
+        int i = offset;
+        int end = offset + length;
+        while(i < end) {
+            if(run == 0) {
+                nextChunk();
+            }
+            if(run == 1) {
+                pixels[i++] = prev;
+                run = 0;
+            } else {
+                int n = Math.min(run, end - i);
+                i = QOIDecoder.fill(pixels, i, i + n, prev);
+                run -= n;
+            }
+        }
+
+        decoded += length;
+    }
+
+    /**
+     * Decode the next pixels up to the end of the current chunk, without storing them:
+     * they are all equal to QOIStreamDecoder::lastPixel. A "QOI_OP_RUN" chunk is consumed at once,
+     * so callers can skip runs in constant time
+     * @param max (long) - Largest number of pixels to decode, at least 1
+     * @return (int) - Number of pixels decoded, between 1 and max
+     * @throws IOException if the underlying input fails or ends too early
+     * @throws AssertionError if all the pixels were already decoded
+     */
+    int readRun(long max) throws IOException {
+        assert max > 0;
+        assert decoded < (long) width * height;
+
+        if(run == 0) {
+            nextChunk();
+        }
+
+        int n = (int) Math.min(Math.min(run, max), (long) width * height - decoded);
+        run -= n;
+        decoded += n;
+        return n;
+    }
+
+    /**
+     * Decode whole chunks without storing their pixels, up to the last chunk boundary
+     * at or before the given pixel
+     * @param target (long) - Index of a pixel, at most width * height
+     * @return (long) - Index of the first pixel of the next chunk, at most target
+     * @throws IOException if the underlying input fails or ends too early
+     * @throws AssertionError if a run is pending or the target was already passed
+     */
+    long skipChunks(long target) throws IOException {
+        assert run == 0;
+        assert decoded <= target && target <= (long) width * height;
+
+        while(decoded < target) {
+            require(1);
+            byte chunk = buffer[position];
+            int n = QOIDecoder.isRun(chunk) ? (chunk & 0b00_11_11_11) + 1 : 1;
+            if(decoded + n > target) {
+                break;
+            }
+            nextChunk();
+            run = 0;
+            decoded += n;
+        }
+        return decoded;
+    }
+
+    /**
+     * Last decoded pixel
+     * @return (int) - ARGB pixel, the start pixel before any decoding
+     */
+    int lastPixel(){
+        return prev;
+    }
+
+    /**
+     * Copy of the index of the previously seen pixels
+     * @return (int[]) - The 64 entries of the index
+     */
+    int[] index(){
+        return hashTable.clone();
+    }
+
+    /**
+     * Number of bytes read from the input by the decoded chunks, header included
+     * @return (long) - Position in the file of the next chunk, for a decoder created at the start of the file
+     */
+    long offset(){
+        return consumed - (limit - position);
+    }
+
+    /**
+     * Check that the "End Of File" follows the last chunk
+     * @throws IOException if the underlying input fails or ends too early
+     * @throws AssertionError if some pixels are left to decode or the "End Of File" is corrupted
+     */
+    public void checkEOF() throws IOException {
+        assert decoded == (long) width * height && run == 0;
+        require(QOISpecification.QOI_EOF.length);
+        for(byte b : QOISpecification.QOI_EOF) {
+            assert buffer[position++] == b;
+        }
+        event.commit(width, height, channels, consumed - (limit - position), 4 * decoded);
+    }
+
+    /**
+     * Close the underlying input
+     * @throws IOException if the underlying input fails
+     */
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    // Decode the next chunk: update the previous pixel and the index, and set run
+    // to the number of pixels the chunk gives, all equal to prev
+    private void nextChunk() throws IOException {
+        require(1);
+        int chunk = buffer[position++] & 0xFF;
+
+        switch(chunk >>> 6) {
+            case 0b00 -> prev = hashTable[chunk];
+            case 0b01 -> {
+                int dr = ((chunk >>> 4) & 0b11) - 2;
+                int dg = ((chunk >>> 2) & 0b11) - 2;
+                int db = (chunk & 0b11) - 2;
+                prev = QOIDecoder.withRGB(prev, (prev >>> 16) + dr, (prev >>> 8) + dg, prev + db);
+            }
+            case 0b10 -> {
+                require(1);
+                int dg = (chunk & 0b00_11_11_11) - 32;
+                int data = buffer[position++] & 0xFF;
+                int dr = dg + (data >>> 4) - 8;
+                int db = dg + (data & 0b00_00_11_11) - 8;
+                prev = QOIDecoder.withRGB(prev, (prev >>> 16) + dr, (prev >>> 8) + dg, prev + db);
+            }
+            default -> {
+                if(chunk == (QOISpecification.QOI_OP_RGB_TAG & 0xFF)) {
+                    require(3);
+                    prev = QOIDecoder.withRGB(prev, buffer[position], buffer[position + 1], buffer[position + 2]);
+                    position += 3;
+                } else if(chunk == (QOISpecification.QOI_OP_RGBA_TAG & 0xFF)) {
+                    require(4);
+                    prev = (buffer[position + 3] << 24) | QOIDecoder.withRGB(0, buffer[position], buffer[position + 1], buffer[position + 2]);
+                    position += 4;
+                } else {
+                    run = (chunk & 0b00_11_11_11) + 1;
+                    return;
+                }
+            }
+        }
+
+        hashTable[QOISpecification.hash(prev)] = prev;
+        run = 1;
+    }
+
+    // Make sure the next count bytes are in the buffer. The input is only read when they are not,
+    // so a decoder on a pipe or a socket never waits for bytes past the ones it decodes
+    private void require(int count) throws IOException {
+        if(limit - position < count) {
+            fill(count);
+        }
+    }
+
+    // Keep the unread bytes and refill the buffer until at least count bytes are available,
+    // taking whatever the input has ready at each read
+    private void fill(int count) throws IOException {
+        int remaining = limit - position;
+        System.arraycopy(buffer, position, buffer, 0, remaining);
+        position = 0;
+        limit = remaining;
+
+        while(limit < count) {
+            int n = input.read(buffer, limit, buffer.length - limit);
+            if(n < 0) {
+                throw new EOFException("Unexpected end of \"Quite Ok Image\" stream");
+            }
+            limit += n;
+            consumed += n;
+        }
+    }
+
+}
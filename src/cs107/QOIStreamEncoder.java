@@ -0,0 +1,242 @@
+package cs107;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * "Quite Ok Image" Encoder writing to a stream.
+ * Pixels are given in batches of any size (a row, a tile of rows, ...) and the chunks
+ * go through a small fixed buffer, so the memory used doesn't depend on the size of the image.
+ * The running pixel, the index and the current run are kept between calls.
+ * The header is written first and the "End Of File" is written by QOIStreamEncoder::close.
+ * Each call to write is timed by its own Flight Recorder event, so the time the caller spends
+ * between two batches is not counted as encoding.
+ * @apiNote Produces exactly the same bytes as QOIEncoder::qoiFile
+ */
+public final class QOIStreamEncoder implements Closeable {
+
+    /**
+     * Default size of the output buffer
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream output;
+    private final byte[] buffer;
+    private final long pixelCount;
+    private final int width;
+    private final int height;
+    private final byte channels;
+    private final QOIEvents.Encode event = new QOIEvents.Encode();
+    private long bytes = 0;
+
+    private final int[] hashTable = new int[64];
+    private int prev = QOISpecification.START_PIXEL_ARGB;
+    private int count = 0;
+    private long written = 0;
+    private int position;
+    private boolean closed = false;
+
+    /**
+     * Create an encoder writing to the given stream
+     * @param output (OutputStream) - Stream where to write the file
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @throws AssertionError if the output is null or the header is invalid
+     */
+    public QOIStreamEncoder(OutputStream output, int width, int height, byte channels, byte colorSpace){
+        this(output, width, height, channels, colorSpace, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create an encoder writing to the given channel
+     * @param output (WritableByteChannel) - Channel where to write the file
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @throws AssertionError if the output is null or the header is invalid
+     */
+    public QOIStreamEncoder(WritableByteChannel output, int width, int height, byte channels, byte colorSpace){
+        this(Channels.newOutputStream(output), width, height, channels, colorSpace, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create an encoder writing to the given stream through a buffer of the given size
+     * @param output (OutputStream) - Stream where to write the file
+     * @param width (int) - Width of the image
+     * @param height (int) - Height of the image
+     * @param channels (byte) - Number of channels
+     * @param colorSpace (byte) - Color space
+     * @param bufferSize (int) - Size of the output buffer, at least the size of the header
+     * @throws AssertionError if the output is null, the header is invalid or the buffer too small
+     */
+    public QOIStreamEncoder(OutputStream output, int width, int height, byte channels, byte colorSpace, int bufferSize){
+        assert output != null;
+        assert bufferSize >= QOISpecification.HEADER_SIZE;
+
+        this.output = output;
+        this.buffer = new byte[bufferSize];
+        this.pixelCount = (long) width * height;
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.position = QOIEncoder.writeHeader(width, height, channels, colorSpace, buffer, 0);
+    }
+
+    /**
+     * Encode the next pixels of the image
+     * @param pixels (int[]) - ARGB packed pixels
+     * @throws IOException if the underlying output fails
+     * @throws AssertionError if the pixels are null, the encoder is closed
+     * or more pixels than width * height are given
+     */
+    public void write(int[] pixels) throws IOException {
+        assert pixels != null;
+        write(pixels, 0, pixels.length);
+    }
+
+    /**
+     * Encode the next pixels of the image
+     * @param pixels (int[]) - ARGB packed pixels
+     * @param offset (int) - Index of the first pixel to encode
+     * @param length (int) - Number of pixels to encode
+     * @throws IOException if the underlying output fails
+     * @throws AssertionError if the pixels are null, the bounds are invalid, the encoder is closed
+     * or more pixels than width * height are given
+     */
+    public void write(int[] pixels, int offset, int length) throws IOException {
+        assert !closed;
+        assert pixels != null;
+        assert offset >= 0 && length >= 0 && offset + length <= pixels.length;
+        assert written + length <= pixelCount;
+
+        event.begin();
+        long produced = bytes + position;
+        // Worst case of a single pixel: a pending run followed by a QOI_OP_RGBA chunk
+        int limit = buffer.length - 6;
+        int end = offset + length;
+
+        for(int i = offset; i < end; ) {
+            if(position > limit) {
+                drain();
+            }
+
+            int pixel = pixels[i];
+
+            if(pixel == prev) {
+                // The whole run of this batch is measured at once, it may go on in the next batch
+                int n = QOIEncoder.runLength(pixels, i, end);
+                i += n;
+                written += n;
+                count += n;
+                for(; count >= 62; count -= 62) {
+                    if(position > limit) {
+                        drain();
+                    }
+                    buffer[position++] = (byte)(QOISpecification.QOI_OP_RUN_TAG | 61);
+                }
+                if(count > 0 && written == pixelCount) {
+                    buffer[position++] = (byte)(QOISpecification.QOI_OP_RUN_TAG | (count - 1));
+                    count = 0;
+                }
+                continue;
+            }
+
+            if(count > 0) {
+                buffer[position++] = (byte)(QOISpecification.QOI_OP_RUN_TAG | (count - 1));
+                count = 0;
+            }
+
+            position = QOIEncoder.writeChunk(pixel, prev, hashTable, buffer, position);
+            prev = pixel;
+            ++i;
+            ++written;
+        }
+
+        event.commit(width, height, channels, 4L * length, bytes + position - produced);
+    }
+
+    /**
+     * Encode all the rows of an image, converting them to ARGB on the way
+     * @param image (PixelBuffer) - The image, with the width given to the constructor
+     * @throws IOException if the underlying output fails
+     * @throws AssertionError if the image is null, has another width, the encoder is closed
+     * or more pixels than width * height are given
+     */
+    public void write(PixelBuffer image) throws IOException {
+        assert image != null;
+        assert pixelCount % image.width() == 0;
+
+        if(image.isContiguousARGB()) {
+            write(image.array(), 0, image.width() * image.height());
+            return;
+        }
+        int[] row = new int[image.width()];
+        for(int y = 0; y < image.height(); ++y) {
+            image.readRow(y, row, 0);
+            write(row, 0, row.length);
+        }
+    }
+
+    /**
+     * Write the buffered chunks to the output and flush it.
+     * A pending run is only written with the next different pixel or by QOIStreamEncoder::close
+     * @throws IOException if the underlying output fails
+     */
+    public void flush() throws IOException {
+        drain();
+        output.flush();
+    }
+
+    /**
+     * Write the "End Of File", flush and close the output. The output is closed in every case,
+     * even when the image is incomplete or writing fails
+     * @throws IOException if the underlying output fails, or if fewer than width * height pixels
+     * were given: the chunks are written but not the "End Of File"
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            // Only an incomplete image can stop in the middle of a run, its pixels are written too
+            if(count > 0) {
+                if(position == buffer.length) {
+                    drain();
+                }
+                buffer[position++] = (byte)(QOISpecification.QOI_OP_RUN_TAG | (count - 1));
+                count = 0;
+            }
+            if(written == pixelCount) {
+                if(position + QOISpecification.QOI_EOF.length > buffer.length) {
+                    drain();
+                }
+                for(byte b : QOISpecification.QOI_EOF) {
+                    buffer[position++] = b;
+                }
+            }
+            drain();
+        } finally {
+            output.close();
+        }
+        if(written != pixelCount) {
+            throw new IOException(String.format("Incomplete \"Quite Ok Image\": %d of %d pixels written", written, pixelCount));
+        }
+    }
+
+    // Write the buffered chunks to the output, without flushing it
+    private void drain() throws IOException {
+        output.write(buffer, 0, position);
+        bytes += position;
+        position = 0;
+    }
+
+}
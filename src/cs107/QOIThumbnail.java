@@ -0,0 +1,154 @@
+package cs107;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Thumbnails of "Quite Ok Image" files, decoded without the full resolution image.
+ * The file is decoded row by row with QOIStreamDecoder and every row is box-filtered
+ * on the fly into the row of the thumbnail it belongs to, so the memory used is the
+ * thumbnail plus one row of the file.
+ * The colors are averaged weighted by their alpha (premultiplied), so fully transparent pixels
+ * don't darken the edges and a fully transparent box gives a transparent black pixel.
+ */
+public final class QOIThumbnail {
+
+    // Hide default constructor
+    private QOIThumbnail(){}
+
+    /**
+     * Thumbnail of a file reduced by an integer factor, each pixel being the average of
+     * a factor x factor block (smaller on the right and bottom edges)
+     * @param content (byte[]) - Content of the file
+     * @param factor (int) - Reduction factor
+     * @return (PixelBuffer) - The thumbnail, ceil(width / factor) x ceil(height / factor)
+     * @throws AssertionError if the content is null or corrupted or the factor is invalid
+     */
+    public static PixelBuffer decode(byte[] content, int factor){
+        assert content != null;
+        try {
+            return decode(new ByteArrayInputStream(content), factor);
+        } catch (IOException e) {
+            return Helper.fail("The file ends too early");
+        }
+    }
+
+    /**
+     * Thumbnail of a file of the given size, each pixel being the average of the pixels
+     * of the file it covers
+     * @param content (byte[]) - Content of the file
+     * @param width (int) - Width of the thumbnail, at most the width of the file
+     * @param height (int) - Height of the thumbnail, at most the height of the file
+     * @return (PixelBuffer) - The thumbnail
+     * @throws AssertionError if the content is null or corrupted or the size is invalid
+     */
+    public static PixelBuffer decode(byte[] content, int width, int height){
+        assert content != null;
+        try {
+            return decode(new ByteArrayInputStream(content), width, height);
+        } catch (IOException e) {
+            return Helper.fail("The file ends too early");
+        }
+    }
+
+    /**
+     * Thumbnail of a file reduced by an integer factor, read from a stream
+     * @param input (InputStream) - Stream of the file, not closed
+     * @param factor (int) - Reduction factor
+     * @return (PixelBuffer) - The thumbnail, ceil(width / factor) x ceil(height / factor)
+     * @throws IOException if the stream fails or ends too early
+     * @throws AssertionError if the input is null, the file is corrupted or the factor is invalid
+     */
+    public static PixelBuffer decode(InputStream input, int factor) throws IOException {
+        assert factor > 0;
+        var decoder = new QOIStreamDecoder(input);
+        int[] columns = new int[decoder.width()];
+        for(int x = 0; x < columns.length; ++x) {
+            columns[x] = x / factor;
+        }
+        int width = (decoder.width() + factor - 1) / factor;
+        int height = (decoder.height() + factor - 1) / factor;
+        return decode(decoder, columns, width, height, y -> y / factor);
+    }
+
+    /**
+     * Thumbnail of a file of the given size, read from a stream
+     * @param input (InputStream) - Stream of the file, not closed
+     * @param width (int) - Width of the thumbnail, at most the width of the file
+     * @param height (int) - Height of the thumbnail, at most the height of the file
+     * @return (PixelBuffer) - The thumbnail
+     * @throws IOException if the stream fails or ends too early
+     * @throws AssertionError if the input is null, the file is corrupted or the size is invalid
+     */
+    public static PixelBuffer decode(InputStream input, int width, int height) throws IOException {
+        var decoder = new QOIStreamDecoder(input);
+        int sourceWidth = decoder.width();
+        int sourceHeight = decoder.height();
+        assert width > 0 && width <= sourceWidth;
+        assert height > 0 && height <= sourceHeight;
+
+        int[] columns = new int[sourceWidth];
+        for(int x = 0; x < sourceWidth; ++x) {
+            columns[x] = (int) ((long) x * width / sourceWidth);
+        }
+        return decode(decoder, columns, width, height, y -> (int) ((long) y * height / sourceHeight));
+    }
+
+    // Box filter every decoded row into the thumbnail row given by rows, through the column map
+    private static PixelBuffer decode(QOIStreamDecoder decoder, int[] columns, int width, int height,
+                                      IntUnaryOperator rows) throws IOException {
+        var thumbnail = PixelBuffer.allocate(width, height, decoder.channels(), decoder.colorSpace());
+        int[] pixels = thumbnail.array();
+
+        int[] row = new int[decoder.width()];
+        long[] alpha = new long[width];
+        long[] red = new long[width];
+        long[] green = new long[width];
+        long[] blue = new long[width];
+        int[] count = new int[width];
+
+        int current = 0;
+        for(int y = 0; decoder.readRow(row); ++y) {
+            int target = rows.applyAsInt(y);
+            if(target != current) {
+                flush(alpha, red, green, blue, count, pixels, current * width);
+                current = target;
+            }
+            for(int x = 0; x < row.length; ++x) {
+                int pixel = row[x];
+                int column = columns[x];
+                int a = pixel >>> 24;
+                alpha[column] += a;
+                red[column] += (long) ((pixel >>> 16) & 0xFF) * a;
+                green[column] += (long) ((pixel >>> 8) & 0xFF) * a;
+                blue[column] += (long) (pixel & 0xFF) * a;
+                ++count[column];
+            }
+        }
+        flush(alpha, red, green, blue, count, pixels, current * width);
+        decoder.checkEOF();
+
+        return thumbnail;
+    }
+
+    // Write the averages of the accumulated row and clear it
+    private static void flush(long[] alpha, long[] red, long[] green, long[] blue, int[] count, int[] pixels, int offset){
+        for(int x = 0; x < count.length; ++x) {
+            long sum = alpha[x];
+            int pixel = 0;
+            if(sum > 0) {
+                int a = (int) ((sum + count[x] / 2) / count[x]);
+                int r = (int) ((red[x] + sum / 2) / sum);
+                int g = (int) ((green[x] + sum / 2) / sum);
+                int b = (int) ((blue[x] + sum / 2) / sum);
+                pixel = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+            pixels[offset + x] = pixel;
+            alpha[x] = red[x] = green[x] = blue[x] = 0;
+            count[x] = 0;
+        }
+    }
+
+}
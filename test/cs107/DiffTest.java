@@ -0,0 +1,129 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pixel and byte comparisons must report the differences found by a plain scan.
+ */
+class DiffTest {
+
+    @Test
+    void pixelDiffIgnoresEncoding(){
+        var image = QOIDecoder.decodePixels(qoi("testcard_rgba"));
+        int[] pixels = image.array();
+        int width = image.width();
+        var content = QOIEncoder.qoiFile(image);
+
+        // Same pixels, every one of them in a QOI_OP_RGBA chunk
+        var raw = new byte[QOIEncoder.maxFileSize(width, image.height())];
+        int position = QOIEncoder.writeHeader(width, image.height(), QOISpecification.RGBA, QOISpecification.sRGB, raw, 0);
+        for(int pixel : pixels) {
+            raw[position++] = QOISpecification.QOI_OP_RGBA_TAG;
+            raw[position++] = (byte) (pixel >>> 16);
+            raw[position++] = (byte) (pixel >>> 8);
+            raw[position++] = (byte) pixel;
+            raw[position++] = (byte) (pixel >>> 24);
+        }
+        System.arraycopy(QOISpecification.QOI_EOF, 0, raw, position, QOISpecification.QOI_EOF.length);
+        assertTrue(Diff.comparePixels(content, raw).same());
+
+        // A few changed pixels, and a long run over several rows
+        int[] changed = pixels.clone();
+        changed[3 * width + 17] ^= 0x00_05_00_00;
+        changed[40 * width + 2] ^= 0x30_00_00_00;
+        Arrays.fill(changed, 100 * width + width / 2, 103 * width + 5, 0xFF_00_00_00);
+        var diff = Diff.comparePixels(content, QOIEncoder.qoiFile(changed, width, image.height(), QOISpecification.RGBA, QOISpecification.sRGB));
+
+        long mismatches = 0;
+        int[] maxDelta = new int[4];
+        int minX = width, minY = image.height(), maxX = -1, maxY = -1, first = -1;
+        for(int i = 0; i < pixels.length; ++i) {
+            int p1 = pixels[i];
+            int p2 = changed[i];
+            if(p1 == p2) {
+                continue;
+            }
+            ++mismatches;
+            first = first < 0 ? i : first;
+            maxDelta[0] = Math.max(maxDelta[0], Math.abs(((p1 >>> 16) & 0xFF) - ((p2 >>> 16) & 0xFF)));
+            maxDelta[1] = Math.max(maxDelta[1], Math.abs(((p1 >>> 8) & 0xFF) - ((p2 >>> 8) & 0xFF)));
+            maxDelta[2] = Math.max(maxDelta[2], Math.abs((p1 & 0xFF) - (p2 & 0xFF)));
+            maxDelta[3] = Math.max(maxDelta[3], Math.abs((p1 >>> 24) - (p2 >>> 24)));
+            minX = Math.min(minX, i % width);
+            maxX = Math.max(maxX, i % width);
+            minY = Math.min(minY, i / width);
+            maxY = Math.max(maxY, i / width);
+        }
+        assertEquals(mismatches, diff.mismatches());
+        assertEquals(first % width, diff.firstX());
+        assertEquals(first / width, diff.firstY());
+        assertEquals(pixels[first], diff.first1());
+        assertEquals(changed[first], diff.first2());
+        assertArrayEquals(maxDelta, diff.maxDelta());
+        assertEquals(new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1), diff.bounds());
+    }
+
+    @Test
+    void mappedByteDiffFindsRanges(@TempDir Path folder) throws IOException {
+        // Slightly more than a window, with differences close to each other and across the boundary
+        var bytes = new byte[Diff.WINDOW_SIZE + 100];
+        new Random(25).nextBytes(bytes);
+        var changed = Arrays.copyOf(bytes, bytes.length + 50);
+        for(int at : new int[]{10, 14, 100, 120, 121, 5_000, Diff.WINDOW_SIZE - 3, Diff.WINDOW_SIZE + 2, Diff.WINDOW_SIZE + 90}) {
+            changed[at] ^= 0x5A;
+        }
+        var file_1 = Files.write(folder.resolve("a.bin"), bytes);
+        var file_2 = Files.write(folder.resolve("b.bin"), changed);
+        var copy = Files.write(folder.resolve("c.bin"), bytes);
+
+        // Ranges separated by fewer than 8 equal bytes are merged
+        var expected = new ArrayList<Diff.ByteRange>();
+        for(int i = 0; i < bytes.length; ++i) {
+            if(bytes[i] == changed[i]) {
+                continue;
+            }
+            int end = i + 1;
+            for(int j = end; j < bytes.length && j - end < 8; ++j) {
+                if(bytes[j] != changed[j]) {
+                    end = j + 1;
+                }
+            }
+            expected.add(new Diff.ByteRange(i, end - i));
+            i = end;
+        }
+
+        var diff = Diff.compareFiles(file_1, file_2, Diff.MAX_RANGES);
+        assertEquals(bytes.length, diff.size1());
+        assertEquals(changed.length, diff.size2());
+        assertEquals(6, diff.rangeCount());
+        assertEquals(expected, diff.ranges());
+        assertTrue(!diff.same());
+
+        var pool = new ForkJoinPool(2);
+        var first = Diff.compareFiles(file_1, file_2, 2, pool);
+        pool.shutdown();
+        assertEquals(6, first.rangeCount());
+        assertEquals(expected.subList(0, 2), first.ranges());
+
+        assertTrue(Diff.compareFiles(file_1, copy, Diff.MAX_RANGES).same());
+        var empty = Files.write(folder.resolve("d.bin"), new byte[0]);
+        assertTrue(!Diff.compareFiles(file_1, empty, 1).same());
+        assertEquals(0, Diff.compareFiles(file_1, empty, 1).rangeCount());
+    }
+
+}
@@ -0,0 +1,58 @@
+package cs107;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static cs107.References.png;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * PNG rasters must be read and written in bulk with the same pixels as getRGB and setRGB.
+ */
+class HelperTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void bulkIngestionMatchesGetRGB(String name) throws IOException {
+        var io = ImageIO.read(References.path(name, ".png").toFile());
+        int[] types = {io.getType(), BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_INDEXED, BufferedImage.TYPE_BYTE_BINARY};
+        for(int type : types) {
+            var image = io;
+            if(type != io.getType()) {
+                image = new BufferedImage(io.getWidth(), io.getHeight(), type);
+                image.createGraphics().drawImage(io, 0, 0, null);
+            }
+            var expected = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+            assertArrayEquals(expected, Helper.toPixels(image).array(), "type " + type);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void pngWriterRoundTrip(String name) throws IOException {
+        var expected = png(name);
+        var image = PixelBuffer.fromImage(expected);
+        var copy = PixelBuffer.allocateDirect(PixelBuffer.Layout.BYTE_RGBA, image.width(), image.height(),
+                image.channels(), image.colorSpace());
+        for(int y = 0; y < image.height(); ++y) {
+            copy.writeRow(y, expected.data()[y], 0);
+        }
+        for(var pixels : new PixelBuffer[]{image, copy}) {
+            for(int level : new int[]{0, 9}) {
+                var output = new ByteArrayOutputStream();
+                Helper.writePng(pixels, level, output);
+                var io = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+                assertEquals(expected, Helper.toPixels(io).toImage(), pixels.layout() + " level " + level);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package cs107;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.ByteBuffer;
+
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Every layout and storage of a PixelBuffer must decode and encode the same pixels.
+ */
+class PixelBufferTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void pixelBufferLayoutsRoundTrip(String name){
+        var image = png(name);
+        var data = image.data();
+        var width = data[0].length;
+        var height = data.length;
+        var heap = PixelBuffer.fromImage(image);
+        assertArrayEquals(qoi(name), QOIEncoder.qoiFile(heap));
+        assertEquals(heap, QOIDecoder.decodePixels(qoi(name)));
+
+        for(var layout : PixelBuffer.Layout.values()) {
+            if(layout == PixelBuffer.Layout.BYTE_RGB && image.channels() == QOISpecification.RGBA) {
+                continue;
+            }
+            int size = (width + 3) * height * layout.pixelSize();
+            var buffers = layout.isPacked()
+                    ? new PixelBuffer[]{PixelBuffer.wrap(new int[size], layout, width, height, width + 3, image.channels(), image.color_space())}
+                    : new PixelBuffer[]{
+                        PixelBuffer.wrap(ByteBuffer.allocateDirect(size), layout, width, height, width + 3, image.channels(), image.color_space()),
+                        PixelBuffer.wrap(ByteBuffer.allocate(size + 5).position(5).slice(), layout, width, height, width + 3, image.channels(), image.color_space())};
+            for(var pixels : buffers) {
+                QOIDecoder.decodeInto(qoi(name), pixels);
+                assertEquals(heap, pixels, layout.name());
+                assertArrayEquals(qoi(name), QOIEncoder.qoiFile(pixels), layout.name());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The conversion kernels must match the per channel conversions of ArrayUtils.
+ */
+class PixelConversionTest {
+
+    @Test
+    void channelKernelsRoundTrip(){
+        var random = new Random(107);
+        var argb = random.ints(1000).toArray();
+        var bytes = new byte[argb.length * 4];
+        var back = new int[argb.length];
+
+        PixelConversion.argbToRgba(argb, 0, bytes, 0, argb.length);
+        assertArrayEquals(ArrayUtils.concat(ArrayUtils.imageToChannels(new int[][]{argb})), bytes);
+        PixelConversion.rgbaToArgb(bytes, 0, back, 0, argb.length);
+        assertArrayEquals(argb, back);
+
+        var rgb = new byte[argb.length * 3];
+        PixelConversion.argbToRgb(argb, 0, rgb, 0, argb.length);
+        PixelConversion.rgbToArgb(rgb, 0, back, 0, argb.length);
+        for(int i = 0; i < argb.length; ++i) {
+            assertEquals(argb[i] | 0xFF_00_00_00, back[i]);
+        }
+        PixelConversion.rgbToRgba(rgb, 0, bytes, 0, argb.length);
+        PixelConversion.rgbaToRgb(bytes, 0, bytes, 0, argb.length);
+        assertArrayEquals(rgb, Arrays.copyOf(bytes, rgb.length));
+    }
+
+    @Test
+    void premultiplyRoundsEveryValue(){
+        var pixels = new int[256 * 256];
+        for(int a = 0; a < 256; ++a) {
+            for(int c = 0; c < 256; ++c) {
+                pixels[a * 256 + c] = a << 24 | c << 16 | c << 8 | c;
+            }
+        }
+        PixelConversion.premultiply(pixels, 0, pixels.length);
+        for(int a = 0; a < 256; ++a) {
+            for(int c = 0; c < 256; ++c) {
+                assertEquals(Math.round(c * a / 255f), pixels[a * 256 + c] & 0xFF, "c = " + c + ", a = " + a);
+            }
+        }
+        PixelConversion.unpremultiply(pixels, 0, pixels.length);
+        for(int c = 0; c < 256; ++c) {
+            assertEquals(0xFF_00_00_00 | c << 16 | c << 8 | c, pixels[255 * 256 + c]);
+        }
+    }
+
+}
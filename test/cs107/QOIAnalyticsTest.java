@@ -0,0 +1,94 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Statistics read from the chunks must match a scan of the decoded pixels.
+ */
+class QOIAnalyticsTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void analyticsMatchDecodedPixels(String name){
+        var content = qoi(name);
+        var image = QOIDecoder.decodePixels(content);
+        assertAnalysis(image, QOIAnalytics.analyze(content));
+        assertEquals(QOIAnalytics.analyze(content).opaque(), QOIAnalytics.isOpaque(content));
+        assertEquals(QOIAnalytics.analyze(content).solidColor(), QOIAnalytics.isSolidColor(content));
+    }
+
+    @Test
+    void analyticsOfSparseImage(){
+        // Transparent image with a run over two rows and a small opaque block
+        int width = 50;
+        int height = 40;
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, 7 * width + 45, 8 * width + 3, 0x80_20_40_60);
+        for(int y = 20; y < 25; ++y) {
+            Arrays.fill(pixels, y * width + 10, y * width + 14, 0xFF_FF_00_00);
+        }
+        var content = QOIEncoder.qoiFile(pixels, width, height, QOISpecification.RGBA, QOISpecification.sRGB);
+        var analysis = QOIAnalytics.analyze(content);
+        assertAnalysis(PixelBuffer.wrap(pixels, width, height, QOISpecification.RGBA, QOISpecification.sRGB), analysis);
+        assertEquals(new Rectangle(0, 7, width, 18), analysis.bounds());
+        assertTrue(!QOIAnalytics.isOpaque(content) && !QOIAnalytics.isSolidColor(content));
+
+        var solid = new int[width * height];
+        Arrays.fill(solid, 0xFF_12_34_56);
+        content = QOIEncoder.qoiFile(solid, width, height, QOISpecification.RGB, QOISpecification.sRGB);
+        assertTrue(QOIAnalytics.isOpaque(content) && QOIAnalytics.isSolidColor(content));
+        assertEquals(0xFF_12_34_56, QOIAnalytics.analyze(content).averageColor());
+
+        content = QOIEncoder.qoiFile(new int[width * height], width, height, QOISpecification.RGBA, QOISpecification.sRGB);
+        assertTrue(QOIAnalytics.analyze(content).bounds().isEmpty());
+        assertEquals(0, QOIAnalytics.analyze(content).averageColor());
+    }
+
+    // Scan the decoded pixels and compare with the analysis of the chunks
+    private static void assertAnalysis(PixelBuffer image, QOIAnalytics.Analysis analysis){
+        int[] pixels = image.array();
+        int width = image.width();
+        long[][] histogram = new long[4][256];
+        long a = 0, r = 0, g = 0, b = 0;
+        int minX = width, minY = image.height(), maxX = -1, maxY = -1;
+        for(int i = 0; i < pixels.length; ++i) {
+            int pixel = pixels[i];
+            int alpha = pixel >>> 24;
+            ++histogram[0][(pixel >>> 16) & 0xFF];
+            ++histogram[1][(pixel >>> 8) & 0xFF];
+            ++histogram[2][pixel & 0xFF];
+            ++histogram[3][alpha];
+            a += alpha;
+            r += (long) ((pixel >>> 16) & 0xFF) * alpha;
+            g += (long) ((pixel >>> 8) & 0xFF) * alpha;
+            b += (long) (pixel & 0xFF) * alpha;
+            if(alpha != 0) {
+                minX = Math.min(minX, i % width);
+                maxX = Math.max(maxX, i % width);
+                minY = Math.min(minY, i / width);
+                maxY = Math.max(maxY, i / width);
+            }
+        }
+        assertEquals(image.width(), analysis.width());
+        assertEquals(image.height(), analysis.height());
+        assertTrue(Arrays.deepEquals(histogram, analysis.histogram()));
+        assertEquals(a / (255.0 * pixels.length), analysis.alphaCoverage(), 1e-12);
+        assertEquals(histogram[3][255] == pixels.length, analysis.opaque());
+        assertEquals(Arrays.stream(pixels).distinct().count() == 1, analysis.solidColor());
+        int average = a == 0 ? 0 : (int) ((a + pixels.length / 2) / pixels.length) << 24
+                | (int) ((r + a / 2) / a) << 16 | (int) ((g + a / 2) / a) << 8 | (int) ((b + a / 2) / a);
+        assertEquals(average, analysis.averageColor());
+        var bounds = maxX < 0 ? new Rectangle() : new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+        assertEquals(bounds, analysis.bounds());
+    }
+
+}
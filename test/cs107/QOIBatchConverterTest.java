@@ -0,0 +1,76 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Converting the references folder must give back the reference files in both directions.
+ */
+class QOIBatchConverterTest {
+
+    @Test
+    void batchConverterMatchesReferences(@TempDir Path output) throws IOException {
+        QOIBatchConverter.Report report;
+        try(var converter = new QOIBatchConverter()) {
+            report = converter.convert(Path.of(References.FOLDER), output);
+        }
+        assertEquals(0, report.failures());
+        assertTrue(Files.exists(output.resolve(QOIBatchConverter.REPORT_NAME)));
+        References.all().forEach(name -> {
+            assertArrayEquals(qoi(name), Helper.read(output.resolve(name + ".qoi").toString()), name);
+            assertEquals(png(name), Helper.readImage(output.resolve(name + ".png").toString()), name);
+        });
+    }
+
+    @Test
+    void extensionsMatchInAnyCase(@TempDir Path folder) throws IOException {
+        var source = Files.createDirectories(folder.resolve("source"));
+        Files.copy(References.path("dice", ".png"), source.resolve("A.PNG"));
+        Files.copy(References.path("dice", ".qoi"), source.resolve("b.Qoi"));
+        Files.write(source.resolve("c.txt"), new byte[]{1});
+        var output = folder.resolve("output");
+        QOIBatchConverter.Report report;
+        try(var converter = new QOIBatchConverter()) {
+            report = converter.convert(source, output);
+        }
+        assertEquals(2, report.results().size());
+        assertEquals(0, report.failures());
+        assertArrayEquals(qoi("dice"), Helper.read(output.resolve("A.qoi").toString()));
+        assertEquals(png("dice"), Helper.readImage(output.resolve("b.png").toString()));
+    }
+
+    @Test
+    void rejectedTasksReleaseTheirMemory(@TempDir Path output){
+        long files = References.all().count() * 2;
+        // Rejected by the first stage, then by the CPU stage. A budget of a single image
+        // blocks the walk for good if the memory of a rejected file is not released
+        for(boolean first : new boolean[]{true, false}) {
+            ExecutorService running = Executors.newSingleThreadExecutor();
+            ExecutorService stopped = Executors.newSingleThreadExecutor();
+            stopped.shutdown();
+            var converter = first
+                    ? new QOIBatchConverter(stopped, running, 1 << 10)
+                    : new QOIBatchConverter(running, stopped, 1 << 10);
+            var report = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                    () -> converter.convert(Path.of(References.FOLDER), output));
+            running.shutdown();
+            assertEquals(files, report.results().size());
+            assertEquals(files, report.failures());
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Banded containers must decode to the encoded image and convert back to the standard file.
+ */
+class QOIContainerTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void containerRoundTrip(String name){
+        var image = PixelBuffer.fromImage(png(name));
+        var container = QOIContainer.encode(image, 7);
+        assertEquals(image, QOIContainer.decode(container));
+        assertArrayEquals(qoi(name), QOIContainer.toQoi(container));
+    }
+
+    @Test
+    void bandsOfAnyLayoutGiveTheSameContainer(){
+        var image = PixelBuffer.fromImage(png("testcard_rgba"));
+        int width = image.width();
+        int height = image.height();
+        var strided = PixelBuffer.wrap(ByteBuffer.allocate((width + 3) * height * 4), PixelBuffer.Layout.BYTE_RGBA,
+                width, height, width + 3, image.channels(), image.colorSpace());
+        for(int y = 0; y < height; ++y) {
+            strided.writeRow(y, image.array(), y * width);
+        }
+        assertArrayEquals(QOIContainer.encode(image, 5), QOIContainer.encode(strided, 5));
+    }
+
+    @Test
+    void corruptedBandTrailerIsRejected(){
+        var container = QOIContainer.encode(PixelBuffer.fromImage(png("dice")), 64);
+        // Last byte of the "End Of File" of the first band, right before the second band
+        int second = ArrayUtils.readInt(container, QOIContainer.HEADER_SIZE + 4);
+        var corrupted = Arrays.copyOf(container, container.length);
+        corrupted[second - 1] = 2;
+        assertThrows(AssertionError.class, () -> QOIContainer.decode(corrupted));
+    }
+
+}
@@ -0,0 +1,71 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A context must decode like QOIDecoder and keep its buffer between images of the same size.
+ */
+class QOIDecoderContextTest {
+
+    @Test
+    void contextIsReusedAcrossImages() throws Exception {
+        // A tiny bound, so the buffer is dropped after the large image
+        var decoder = new QOIDecoderContext(1024);
+        var random = new Random(20);
+        int[] lastPixels = null;
+        int[] lastSize = null;
+        for(int[] size : new int[][]{{16, 16}, {300, 200}, {3, 7}, {32, 32}, {32, 32}}) {
+            int width = size[0];
+            int height = size[1];
+            int[] pixels = QOIEncoderContextTest.randomPixels(random, width * height);
+            byte[] content = QOIEncoder.qoiFile(pixels, width, height, QOISpecification.RGBA, QOISpecification.sRGB);
+
+            int[] header = decoder.decode(content);
+            assertArrayEquals(new int[]{width, height, QOISpecification.RGBA, QOISpecification.sRGB}, header);
+            assertArrayEquals(pixels, Arrays.copyOf(decoder.pixels(), pixels.length));
+            assertTrue(decoder.pixels().length <= Math.max(pixels.length, 1024 / Integer.BYTES));
+
+            // An image of the same size reuses the buffer
+            if(Arrays.equals(size, lastSize)) {
+                assertSame(lastPixels, decoder.pixels());
+            }
+            lastPixels = decoder.pixels();
+            lastSize = size;
+        }
+
+        assertSame(QOIDecoderContext.local(), QOIDecoderContext.local());
+        var other = new Object[1];
+        var thread = new Thread(() -> other[0] = QOIDecoderContext.local());
+        thread.start();
+        thread.join();
+        assertNotSame(QOIDecoderContext.local(), other[0]);
+    }
+
+    @Test
+    void decodeAllocatesOnlyTheHeader(){
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var pixels = QOIEncoderContextTest.randomPixels(new Random(4), 32 * 32);
+        var content = QOIEncoder.qoiFile(pixels, 32, 32, QOISpecification.RGBA, QOISpecification.sRGB);
+        var decoder = new QOIDecoderContext();
+        decoder.decode(content);
+
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for(int i = 0; i < 1_000; ++i) {
+            decoder.decode(content);
+        }
+        long perDecode = (threads.getThreadAllocatedBytes(id) - before) / 1_000;
+        // The 4 ints of the returned header, and the header of their array
+        assertTrue(perDecode <= 32, perDecode + " bytes per decode");
+    }
+
+}
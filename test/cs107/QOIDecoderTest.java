@@ -0,0 +1,110 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static cs107.References.flatten;
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Each reference "QOI" file must decode to exactly the pixels of its "PNG",
+ * whatever the input and output buffers.
+ */
+class QOIDecoderTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#all")
+    void decodeQoiFileMatchesPng(String name){
+        assertEquals(png(name), QOIDecoder.decodeQoiFile(qoi(name)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#all")
+    void flatDecoderMatchesPng(String name){
+        var data = png(name).data();
+        var pixels = new int[data.length * data[0].length];
+        var header = QOIDecoder.decodeInto(qoi(name), pixels);
+        assertArrayEquals(new int[]{data[0].length, data.length}, Arrays.copyOf(header, 2));
+        assertArrayEquals(flatten(data), pixels);
+    }
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#all")
+    void mappedDecoderMatchesPng(String name){
+        var data = png(name).data();
+        var pixels = new int[data.length * data[0].length];
+        QOIDecoder.decodeInto(Helper.map(References.path(name, ".qoi").toString()), pixels);
+        assertArrayEquals(flatten(data), pixels);
+    }
+
+    @Test
+    void bulkRunFillMatchesPixels(){
+        var pixels = longRuns();
+        var content = QOIEncoder.qoiFile(pixels, pixels.length, 1, QOISpecification.RGB, QOISpecification.sRGB);
+        assertArrayEquals(pixels, QOIDecoder.decodePixels(content).array());
+        // Heap buffers, with or without an array offset, and direct buffers give the same pixels
+        var shifted = ByteBuffer.allocate(content.length + 3).position(3).put(content).position(3).slice();
+        var direct = ByteBuffer.allocateDirect(content.length).put(content).flip();
+        for(var buffer : new ByteBuffer[]{ByteBuffer.wrap(content), shifted, direct}) {
+            int[] decoded = new int[pixels.length];
+            QOIDecoder.decodeInto(buffer, decoded);
+            assertArrayEquals(pixels, decoded);
+        }
+
+        // Decoding a prefix stops inside the merged runs
+        int end = content.length - QOISpecification.QOI_EOF.length;
+        for(int count = 1; count < pixels.length; count += 1_013) {
+            int[] prefix = new int[count];
+            int position = QOIDecoder.decodeData(content, QOISpecification.HEADER_SIZE, end, prefix, count);
+            assertArrayEquals(Arrays.copyOf(pixels, count), prefix);
+            assertEquals(position, QOIDecoder.decodeData(ByteBuffer.wrap(content), QOISpecification.HEADER_SIZE, end, new int[count], count));
+        }
+    }
+
+    @Test
+    void emptyAndTruncatedContentIsRejected(){
+        var content = qoi("dice");
+        var pixels = new int[640 * 480];
+        assertThrows(AssertionError.class, () -> QOIDecoder.decodeInto(new byte[0], pixels));
+        assertThrows(AssertionError.class, () -> QOIDecoder.decodeQoiFile(new byte[0]));
+        assertThrows(AssertionError.class, () -> QOIDecoder.decodeInto(Arrays.copyOf(content, QOISpecification.HEADER_SIZE), pixels));
+        assertThrows(AssertionError.class, () -> QOIDecoder.decodeInto(Arrays.copyOf(content, content.length - 1), pixels));
+        assertThrows(AssertionError.class, () -> QOIDecoder.decodeInto(ByteBuffer.wrap(content, 0, content.length - 3).slice(), pixels));
+        assertThrows(AssertionError.class, () -> QOIDecoder.decodeInto(content, new int[pixels.length - 1]));
+
+        // Chunks cut before the last pixel leave the rest of the output untouched
+        int end = content.length / 2;
+        Arrays.fill(pixels, 7);
+        int position = QOIDecoder.decodeData(content, QOISpecification.HEADER_SIZE, end, pixels, pixels.length);
+        assertTrue(end <= position && position < end + 5);
+        assertEquals(7, pixels[pixels.length - 1]);
+    }
+
+    /**
+     * Runs up to 400 pixels long, so several "QOI_OP_RUN" chunks follow each other
+     * @return (int[]) - Opaque pixels of a single row
+     */
+    static int[] longRuns(){
+        var random = new Random(400);
+        var pixels = new int[30_000];
+        int i = 0;
+        for(int length = 1; i < pixels.length; length = length % 400 + 7) {
+            int pixel = 0xFF_00_00_00 | random.nextInt(4) * 0x40_40_40;
+            for(int k = 0; k < length && i < pixels.length; ++k) {
+                pixels[i++] = pixel;
+            }
+        }
+        return pixels;
+    }
+
+}
@@ -0,0 +1,75 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A context must encode like QOIEncoder and keep its buffer between images of the same size.
+ */
+class QOIEncoderContextTest {
+
+    @Test
+    void contextIsReusedAcrossImages() throws Exception {
+        // A tiny bound, so the buffer is dropped after the large image
+        var encoder = new QOIEncoderContext(1024);
+        var random = new Random(20);
+        byte[] lastBuffer = null;
+        int[] lastSize = null;
+        for(int[] size : new int[][]{{16, 16}, {300, 200}, {3, 7}, {32, 32}, {32, 32}}) {
+            int width = size[0];
+            int height = size[1];
+            int[] pixels = randomPixels(random, width * height);
+            byte[] expected = QOIEncoder.qoiFile(pixels, width, height, QOISpecification.RGBA, QOISpecification.sRGB);
+
+            int length = encoder.encode(pixels, width, height, QOISpecification.RGBA, QOISpecification.sRGB);
+            assertEquals(expected.length, length);
+            assertArrayEquals(expected, encoder.toByteArray());
+            var image = PixelBuffer.wrap(ByteBuffer.allocate(pixels.length * 4), PixelBuffer.Layout.BYTE_RGBA,
+                    width, height, width, QOISpecification.RGBA, QOISpecification.sRGB);
+            for(int y = 0; y < height; ++y) {
+                image.writeRow(y, pixels, y * width);
+            }
+            encoder.encode(image);
+            assertArrayEquals(expected, encoder.toByteArray());
+            assertTrue(encoder.buffer().length <= Math.max(QOIEncoder.maxFileSize(width, height), 1024));
+
+            // An image of the same size reuses the buffer
+            if(Arrays.equals(size, lastSize)) {
+                assertSame(lastBuffer, encoder.buffer());
+            }
+            lastBuffer = encoder.buffer();
+            lastSize = size;
+        }
+
+        assertSame(QOIEncoderContext.local(), QOIEncoderContext.local());
+        var other = new Object[1];
+        var thread = new Thread(() -> other[0] = QOIEncoderContext.local());
+        thread.start();
+        thread.join();
+        assertNotSame(QOIEncoderContext.local(), other[0]);
+    }
+
+    /**
+     * Mostly opaque grays from a small palette, with a third of random pixels
+     * @param random (Random) - Source of the pixels
+     * @param count (int) - Number of pixels
+     * @return (int[]) - ARGB pixels
+     */
+    static int[] randomPixels(Random random, int count){
+        int[] pixels = new int[count];
+        for(int i = 0; i < pixels.length; ++i) {
+            pixels[i] = random.nextInt(3) == 0 ? random.nextInt() : 0xFF_00_00_00 | random.nextInt(4) * 0x40_40_40;
+        }
+        return pixels;
+    }
+
+}
@@ -0,0 +1,71 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Random;
+
+import static cs107.References.flatten;
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Each reference "PNG" must encode to exactly its reference "QOI" file.
+ */
+class QOIEncoderTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#all")
+    void qoiFileMatchesReference(String name){
+        assertArrayEquals(qoi(name), QOIEncoder.qoiFile(png(name)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#all")
+    void flatEncoderMatchesReference(String name){
+        var image = png(name);
+        var data = image.data();
+        var encoded = QOIEncoder.qoiFile(flatten(data), data[0].length, data.length, image.channels(), image.color_space());
+        assertArrayEquals(qoi(name), encoded);
+    }
+
+    @Test
+    void bulkRunsMatchCourseEncoder(){
+        var pixels = runs();
+        var image = Helper.generateImage(new int[][]{pixels}, QOISpecification.RGB, QOISpecification.sRGB);
+        assertArrayEquals(QOIEncoder.qoiFile(image), QOIEncoder.qoiFile(pixels, pixels.length, 1, QOISpecification.RGB, QOISpecification.sRGB));
+    }
+
+    @Test
+    void singlePixelImages(){
+        // A lone start pixel is a run, any other pixel a chunk of its own
+        byte[] run = QOIEncoder.qoiFile(new int[]{QOISpecification.START_PIXEL_ARGB}, 1, 1, QOISpecification.RGBA, QOISpecification.sRGB);
+        assertEquals(QOISpecification.HEADER_SIZE + 1 + QOISpecification.QOI_EOF.length, run.length);
+        assertEquals(QOISpecification.QOI_OP_RUN_TAG, run[QOISpecification.HEADER_SIZE]);
+
+        byte[] rgba = QOIEncoder.qoiFile(new int[]{0x80_12_34_56}, 1, 1, QOISpecification.RGBA, QOISpecification.sRGB);
+        assertEquals(QOISpecification.HEADER_SIZE + 5 + QOISpecification.QOI_EOF.length, rgba.length);
+        assertEquals(0x80_12_34_56, QOIDecoder.decodePixels(rgba).array()[0]);
+    }
+
+    /**
+     * Runs of every length around the 62 pixels limit, starting with a run of the start pixel
+     * @return (int[]) - Opaque pixels of a single row
+     */
+    static int[] runs(){
+        var random = new Random(62);
+        var pixels = new int[20_000];
+        int i = 0;
+        for(int length = 1; i < pixels.length; length = length % 200 + 1) {
+            int pixel = i == 0 ? QOISpecification.START_PIXEL_ARGB : 0xFF_00_00_00 | random.nextInt(4) * 0x40_40_40;
+            for(int k = 0; k < length && i < pixels.length; ++k) {
+                pixels[i++] = pixel;
+            }
+        }
+        return pixels;
+    }
+
+}
@@ -0,0 +1,99 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The codec and the file operations must emit their Flight Recorder events.
+ */
+class QOIEventsTest {
+
+    @Test
+    void flightRecorderEvents(@TempDir Path folder) throws IOException {
+        var events = List.of("cs107.Encode", "cs107.Decode", "cs107.ReadImage", "cs107.Write", "cs107.WriteFile");
+        var dump = folder.resolve("codec.jfr");
+        try(var recording = new Recording()) {
+            for(var name : events) {
+                recording.enable(name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            var image = Helper.readPixels(References.path("dice", ".png").toString());
+            var content = QOIEncoder.qoiFile(image);
+            QOIDecoder.decodePixels(content);
+            // A context commits the same event object for every image
+            var context = new QOIDecoderContext();
+            context.decode(content);
+            context.decode(QOIEncoder.qoiFile(new int[6], 3, 2, QOISpecification.RGBA, QOISpecification.sRGB));
+            Helper.writeImage("flight-recorder-test.png", image);
+            Helper.write("flight-recorder-test.qoi", content);
+            recording.stop();
+            recording.dump(dump);
+        } finally {
+            Files.deleteIfExists(Path.of("res", "flight-recorder-test.png"));
+            Files.deleteIfExists(Path.of("res", "flight-recorder-test.qoi"));
+        }
+
+        var recorded = RecordingFile.readAllEvents(dump);
+        for(var name : events) {
+            var event = recorded.stream().filter(e -> e.getEventType().getName().equals(name)).findFirst().orElseThrow();
+            assertTrue(event.getDuration().toNanos() >= 0);
+            if(!name.equals("cs107.WriteFile")) {
+                assertEquals(640, event.getInt("width"));
+                assertEquals(480, event.getInt("height"));
+                assertEquals(QOISpecification.RGBA, event.getByte("channels"));
+            }
+        }
+        // Raw files have no image fields, only their path and size
+        var file = recorded.stream().filter(e -> e.getEventType().getName().equals("cs107.WriteFile")).findFirst().orElseThrow();
+        assertFalse(file.hasField("width"));
+        assertTrue(file.getString("path").endsWith("flight-recorder-test.qoi"));
+        assertEquals(References.qoi("dice").length, file.getLong("bytes"));
+        var decodes = recorded.stream().filter(e -> e.getEventType().getName().equals("cs107.Decode")).toList();
+        assertEquals(3, decodes.size());
+        assertEquals(References.qoi("dice").length, decodes.get(0).getLong("inputBytes"));
+        assertEquals(1, decodes.stream().filter(e -> e.getInt("width") == 3 && e.getInt("height") == 2).count());
+    }
+
+    @Test
+    void streamEncoderTimesOnlyItsBatches(@TempDir Path folder) throws Exception {
+        var dump = folder.resolve("stream.jfr");
+        var image = QOIDecoder.decodePixels(References.qoi("dice"));
+        int half = image.width() * image.height() / 2;
+        try(var recording = new Recording()) {
+            recording.enable("cs107.Encode").withThreshold(Duration.ZERO);
+            recording.start();
+            try(var encoder = new QOIStreamEncoder(new ByteArrayOutputStream(), image.width(), image.height(),
+                    image.channels(), image.colorSpace())) {
+                encoder.write(image.array(), 0, half);
+                // The caller's own work between two batches
+                Thread.sleep(500);
+                encoder.write(image.array(), half, half);
+            }
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        var batches = RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().equals("cs107.Encode")).toList();
+        assertEquals(2, batches.size());
+        for(var batch : batches) {
+            assertEquals(640, batch.getInt("width"));
+            assertEquals(4L * half, batch.getLong("inputBytes"));
+            assertTrue(batch.getDuration().toMillis() < 500, batch.getDuration().toString());
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * "QOI" files must be readable through ImageIO, whole or by region.
+ */
+class QOIImageReaderTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void readMatchesPng(String name) throws IOException {
+        var decoded = ImageIO.read(new ByteArrayInputStream(qoi(name)));
+        assertEquals(png(name), Helper.toPixels(decoded).toImage());
+    }
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void readRegionWithSubsampling(String name) throws IOException {
+        var data = png(name).data();
+        try(var input = ImageIO.createImageInputStream(new ByteArrayInputStream(qoi(name)))) {
+            var reader = ImageIO.getImageReaders(input).next();
+            reader.setInput(input, true, true);
+            var param = reader.getDefaultReadParam();
+            int width = data[0].length;
+            int height = data.length;
+            var region = new Rectangle(width / 4, height / 3, Math.max(1, width / 2), Math.max(1, height / 2));
+            param.setSourceRegion(region);
+            param.setSourceSubsampling(3, 2, 0, 0);
+            var image = Helper.toPixels(reader.read(0, param));
+            assertEquals((region.width + 2) / 3, image.width());
+            assertEquals((region.height + 1) / 2, image.height());
+            for(int y = 0; y < image.height(); ++y) {
+                for(int x = 0; x < image.width(); ++x) {
+                    assertEquals(data[region.y + 2 * y][region.x + 3 * x], image.getARGB(x, y));
+                }
+            }
+            reader.dispose();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void abortBeforeReadIsCleared(String name) throws IOException {
+        try(var input = ImageIO.createImageInputStream(new ByteArrayInputStream(qoi(name)))) {
+            var reader = ImageIO.getImageReaders(input).next();
+            reader.setInput(input);
+            reader.abort();
+            assertEquals(png(name), Helper.toPixels(reader.read(0)).toImage());
+            reader.dispose();
+        }
+    }
+
+    @Test
+    void intRgbDestinationHasNoAlpha() throws IOException {
+        var expected = References.flatten(png("testcard_rgba").data());
+        try(var input = ImageIO.createImageInputStream(new ByteArrayInputStream(qoi("testcard_rgba")))) {
+            var reader = ImageIO.getImageReaders(input).next();
+            reader.setInput(input);
+            var param = reader.getDefaultReadParam();
+            param.setDestinationType(ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_RGB));
+            var image = reader.read(0, param);
+            assertEquals(BufferedImage.TYPE_INT_RGB, image.getType());
+            int[] elements = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            assertArrayEquals(Arrays.stream(expected).map(pixel -> pixel & 0x00_FF_FF_FF).toArray(), elements);
+            reader.dispose();
+        }
+    }
+
+    @Test
+    void headerIsReadOnceFromThePositionOfTheStream() throws IOException {
+        // A file stored after a prefix, the bytes read are dropped as soon as the header is read
+        var content = qoi("dice");
+        var prefixed = new byte[content.length + 7];
+        System.arraycopy(content, 0, prefixed, 7, content.length);
+        try(var input = ImageIO.createImageInputStream(new ByteArrayInputStream(prefixed))) {
+            input.skipBytes(7);
+            var reader = new QOIImageReaderSpi().createReaderInstance();
+            reader.setInput(input, true, true);
+            assertEquals(640, reader.getWidth(0));
+            assertEquals(7 + QOISpecification.HEADER_SIZE, input.getStreamPosition());
+            input.flushBefore(input.getStreamPosition());
+            assertEquals(png("dice"), Helper.toPixels(reader.read(0)).toImage());
+            reader.dispose();
+        }
+    }
+
+    @Test
+    void corruptedFilesThrowIIOException() throws IOException {
+        var content = qoi("dice");
+        var magic = content.clone();
+        magic[0] = 'Q';
+        var channels = content.clone();
+        channels[12] = 5;
+        var colorSpace = content.clone();
+        colorSpace[13] = 2;
+        var width = content.clone();
+        Arrays.fill(width, 4, 8, (byte) 0);
+        byte[][] corrupted = {new byte[0], Arrays.copyOf(content, QOISpecification.HEADER_SIZE - 1), magic, channels, colorSpace, width,
+                Arrays.copyOf(content, content.length / 2)};
+        for(var file : corrupted) {
+            try(var input = ImageIO.createImageInputStream(new ByteArrayInputStream(file))) {
+                var reader = new QOIImageReaderSpi().createReaderInstance();
+                reader.setInput(input);
+                assertThrows(IIOException.class, () -> reader.read(0));
+                reader.dispose();
+            }
+        }
+    }
+
+}
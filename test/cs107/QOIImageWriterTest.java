@@ -0,0 +1,27 @@
+package cs107;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Images written through ImageIO must be exactly the reference files.
+ */
+class QOIImageWriterTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void writeMatchesReference(String name) throws IOException {
+        var output = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(ImageIO.read(References.path(name, ".png").toFile()), "qoi", output));
+        assertArrayEquals(qoi(name), output.toByteArray());
+    }
+
+}
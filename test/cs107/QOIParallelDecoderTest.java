@@ -0,0 +1,33 @@
+package cs107;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static cs107.References.flatten;
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * The speculative decoder must give the pixels of the sequential one, whatever
+ * the segments the chunks are cut into.
+ */
+class QOIParallelDecoderTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#all")
+    void parallelDecoderMatchesPng(String name){
+        var data = png(name).data();
+        var content = qoi(name);
+        var count = data.length * data[0].length;
+        for(int segmentPixels : new int[]{1, 97, 4096}) {
+            var pixels = new int[count];
+            QOIParallelDecoder.decodeData(content, QOISpecification.HEADER_SIZE, content.length - QOISpecification.QOI_EOF.length,
+                    pixels, count, segmentPixels, ForkJoinPool.commonPool());
+            assertArrayEquals(flatten(data), pixels, "segments of " + segmentPixels + " pixels");
+        }
+    }
+
+}
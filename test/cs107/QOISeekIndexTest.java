@@ -0,0 +1,74 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static cs107.References.flatten;
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Rows and regions decoded from a checkpoint must match the full decode.
+ */
+class QOISeekIndexTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void seekIndexDecodesRowsAndRegions(String name) throws IOException {
+        var data = png(name).data();
+        var expected = flatten(data);
+        var content = qoi(name);
+        int width = data[0].length;
+        int height = data.length;
+        var bytes = QOISeekIndex.build(content, 5).toBytes();
+        try(var file = Files.newByteChannel(References.path(name, ".qoi"))) {
+            assertArrayEquals(bytes, QOISeekIndex.build(file, 5).toBytes());
+            int from = height / 2;
+            assertArrayEquals(Arrays.copyOfRange(expected, from * width, height * width),
+                    QOISeekIndex.fromBytes(bytes).decodeRows(file, from, height));
+        }
+        var index = QOISeekIndex.fromBytes(bytes);
+        for(int from = 0; from < height; from += 3) {
+            int to = Math.min(height, from + 4);
+            assertArrayEquals(Arrays.copyOfRange(expected, from * width, to * width),
+                    index.decodeRows(content, from, to), "rows " + from + " to " + to);
+        }
+        int x = width / 3;
+        int y = height / 2;
+        int w = width / 2;
+        int h = height - y;
+        var region = new int[w * h];
+        for(int i = 0; i < h; ++i) {
+            System.arraycopy(expected, (y + i) * width + x, region, i * w, w);
+        }
+        assertArrayEquals(region, index.decodeRegion(content, x, y, w, h));
+    }
+
+    @Test
+    void regionsSkipRunsAcrossRows(){
+        // Runs longer than the rows, so the skipped pixels start and end inside runs
+        var pixels = QOIDecoderTest.longRuns();
+        int width = 150;
+        int height = pixels.length / width;
+        var content = QOIEncoder.qoiFile(pixels, width, height, QOISpecification.RGB, QOISpecification.sRGB);
+        var index = QOISeekIndex.build(content, 7);
+        for(int[] r : new int[][]{{0, 0, width, height}, {1, 3, 1, 50}, {149, 199, 1, 1}, {20, 13, 0, 5}, {37, 64, 90, 100}}) {
+            int x = r[0];
+            int y = r[1];
+            int w = r[2];
+            int h = r[3];
+            var region = new int[w * h];
+            for(int i = 0; i < h; ++i) {
+                System.arraycopy(pixels, (y + i) * width + x, region, i * w, w);
+            }
+            assertArrayEquals(region, index.decodeRegion(content, x, y, w, h), Arrays.toString(r));
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chunk counts must describe the encoded file, and the sums be published through JMX.
+ */
+class QOIStatisticsTest {
+
+    @Test
+    void statisticsCountChunks() throws Exception {
+        int start = QOISpecification.START_PIXEL_ARGB;
+        int[] pixels = {start, start, start, 0xFF_12_34_56, start, 0x80_12_34_56, 0xFF_12_34_56, 0xFF_13_35_57};
+        var image = PixelBuffer.wrap(pixels, pixels.length, 1, QOISpecification.RGBA, QOISpecification.sRGB);
+        var encoded = QOIStatistics.encode(image);
+        assertArrayEquals(QOIEncoder.qoiFile(image), encoded.content());
+
+        var statistics = encoded.statistics();
+        assertEquals(1, statistics.getRunChunks());
+        assertEquals(1, statistics.getIndexChunks());
+        assertEquals(1, statistics.getDiffChunks());
+        assertEquals(0, statistics.getLumaChunks());
+        assertEquals(2, statistics.getRgbChunks());
+        assertEquals(1, statistics.getRgbaChunks());
+        assertArrayEquals(new long[]{0, 1}, statistics.getRunLengthHistogram());
+        assertEquals(0.2, statistics.getIndexHitRate(), 1e-9);
+        assertEquals(encoded.content().length * 1e6 / pixels.length, statistics.getBytesPerMegapixel(), 1e-6);
+
+        // A slot holding transparent black is occupied too
+        int[] black = {0, 0x00_40_00_00};
+        var collision = QOIStatistics.encode(PixelBuffer.wrap(black, black.length, 1, QOISpecification.RGBA, QOISpecification.sRGB)).statistics();
+        assertEquals(1, collision.getIndexChunks());
+        assertEquals(1, collision.getRgbChunks());
+        assertEquals(0.5, collision.getCollisionRate(), 1e-9);
+
+        // Every pixel of a reference is covered by exactly one chunk, the pixels equal to the previous one by runs
+        var content = qoi("dice");
+        var decoded = QOIStatistics.decode(content);
+        int[] values = decoded.image().array();
+        assertArrayEquals(QOIDecoder.decodePixels(content).array(), values);
+        var reference = decoded.statistics();
+        long runPixels = 0;
+        for(int i = 0, prev = start; i < values.length; prev = values[i++]) {
+            runPixels += values[i] == prev ? 1 : 0;
+        }
+        long written = reference.getIndexChunks() + reference.getDiffChunks() + reference.getLumaChunks()
+                + reference.getRgbChunks() + reference.getRgbaChunks();
+        assertEquals(reference.getPixels(), written + runPixels);
+        long[] histogram = reference.getRunLengthHistogram();
+        long shortest = 0;
+        long longest = 0;
+        for(int k = 0; k < histogram.length; ++k) {
+            shortest += histogram[k] << k;
+            longest += (histogram[k] << (k + 1)) - histogram[k];
+        }
+        assertTrue(shortest <= runPixels && runPixels <= longest);
+        assertTrue(reference.getDecodeNanosPerMegapixel() > 0);
+
+        var sums = QOIStatistics.record("round-trip-test", reference);
+        QOIStatistics.record("round-trip-test", statistics);
+        var name = new ObjectName("cs107:type=QOIStatistics,name=\"round-trip-test\"");
+        var server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(2L, server.getAttribute(name, "Images"));
+        assertEquals(reference.getPixels() + pixels.length, sums.getPixels());
+        sums.reset();
+        assertEquals(0L, server.getAttribute(name, "Images"));
+    }
+
+}
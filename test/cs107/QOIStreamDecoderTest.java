@@ -0,0 +1,123 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The stream decoder must give exactly the pixels of the references, whatever
+ * the size of its buffer and of the batches read.
+ */
+class QOIStreamDecoderTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#all")
+    void streamDecoderMatchesPng(String name) throws IOException {
+        var data = png(name).data();
+        try(var decoder = new QOIStreamDecoder(new ByteArrayInputStream(qoi(name)), 16)) {
+            assertEquals(data[0].length, decoder.width());
+            assertEquals(data.length, decoder.height());
+            decoder.decode((row, y) -> assertArrayEquals(data[y], row));
+        }
+    }
+
+    @Test
+    void runsAcrossBatchBoundaries() throws IOException {
+        var pixels = QOIDecoderTest.longRuns();
+        var content = QOIEncoder.qoiFile(pixels, pixels.length, 1, QOISpecification.RGB, QOISpecification.sRGB);
+        for(int batch : new int[]{1, 62, 97, pixels.length}) {
+            try(var decoder = new QOIStreamDecoder(new ByteArrayInputStream(content), 64)) {
+                int[] decoded = new int[pixels.length];
+                for(int from = 0; from < pixels.length; from += batch) {
+                    decoder.read(decoded, from, Math.min(batch, pixels.length - from));
+                }
+                decoder.checkEOF();
+                assertArrayEquals(pixels, decoded, "batches of " + batch + " pixels");
+            }
+        }
+    }
+
+    @Test
+    void emptyAndTruncatedStreamsFail() throws IOException {
+        var content = qoi("dice");
+        assertThrows(EOFException.class, () -> new QOIStreamDecoder(new ByteArrayInputStream(new byte[0])));
+        assertThrows(EOFException.class, () -> new QOIStreamDecoder(new ByteArrayInputStream(content, 0, QOISpecification.HEADER_SIZE - 1)));
+
+        // Chunks cut in the middle of the image
+        try(var decoder = new QOIStreamDecoder(new ByteArrayInputStream(content, 0, content.length / 2), 64)) {
+            assertThrows(EOFException.class, () -> decoder.decode((row, y) -> {}));
+        }
+
+        // All the pixels, but no "End Of File"
+        int end = content.length - QOISpecification.QOI_EOF.length;
+        try(var decoder = new QOIStreamDecoder(new ByteArrayInputStream(content, 0, end + 3), 64)) {
+            decoder.read(new int[640 * 480], 0, 640 * 480);
+            assertThrows(EOFException.class, decoder::checkEOF);
+        }
+
+        // A corrupted "End Of File"
+        var corrupted = Arrays.copyOf(content, content.length);
+        corrupted[content.length - 1] = 2;
+        try(var decoder = new QOIStreamDecoder(new ByteArrayInputStream(corrupted), 64)) {
+            assertThrows(AssertionError.class, () -> decoder.decode((row, y) -> {}));
+        }
+    }
+
+    @Test
+    void neverReadsPastTheEndOfTheFile() throws IOException {
+        // A pipe giving a few bytes per read, which would block if read once the whole file was given
+        var content = qoi("qoi_op_rgba");
+        var expected = References.flatten(png("qoi_op_rgba").data());
+        for(int piece : new int[]{1, 3, 13, content.length}) {
+            var input = new Pipe(content, piece);
+            try(var decoder = new QOIStreamDecoder(input, 64)) {
+                int[] decoded = new int[expected.length];
+                decoder.read(decoded, 0, decoded.length);
+                decoder.checkEOF();
+                assertArrayEquals(expected, decoded, "pieces of " + piece + " bytes");
+            }
+        }
+    }
+
+    // Stream handing out its content in pieces, failing when read after the last byte
+    private static final class Pipe extends InputStream {
+
+        private final byte[] content;
+        private final int piece;
+        private int position = 0;
+
+        Pipe(byte[] content, int piece){
+            this.content = content;
+            this.piece = piece;
+        }
+
+        @Override
+        public int read(){
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len){
+            if(position == content.length) {
+                throw new IllegalStateException("Read past the end of the file, a pipe would block here");
+            }
+            int n = Math.min(Math.min(piece, len), content.length - position);
+            System.arraycopy(content, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package cs107;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The stream encoder must write exactly the reference files, whatever the way
+ * the pixels are split between the calls to write.
+ */
+class QOIStreamEncoderTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#all")
+    void streamEncoderMatchesReference(String name) throws IOException {
+        var image = png(name);
+        var data = image.data();
+        var output = new ByteArrayOutputStream();
+        try(var encoder = new QOIStreamEncoder(output, data[0].length, data.length, image.channels(), image.color_space(), 64)) {
+            for(int[] row : data) {
+                encoder.write(row);
+            }
+        }
+        assertArrayEquals(qoi(name), output.toByteArray());
+    }
+
+    @Test
+    void runsAcrossBatchBoundaries() throws IOException {
+        var pixels = QOIEncoderTest.runs();
+        var expected = QOIEncoder.qoiFile(pixels, pixels.length, 1, QOISpecification.RGB, QOISpecification.sRGB);
+        // Batches shorter and longer than the runs, and single pixels cutting every run
+        for(int batch : new int[]{1, 61, 62, 63, 97, pixels.length}) {
+            var output = new ByteArrayOutputStream();
+            try(var encoder = new QOIStreamEncoder(output, pixels.length, 1, QOISpecification.RGB, QOISpecification.sRGB, 64)) {
+                for(int from = 0; from < pixels.length; from += batch) {
+                    encoder.write(pixels, from, Math.min(batch, pixels.length - from));
+                }
+            }
+            assertArrayEquals(expected, output.toByteArray(), "batches of " + batch + " pixels");
+        }
+    }
+
+    @Test
+    void emptyWritesChangeNothing() throws IOException {
+        int[] pixels = {QOISpecification.START_PIXEL_ARGB, QOISpecification.START_PIXEL_ARGB, 0xFF_10_20_30};
+        var output = new ByteArrayOutputStream();
+        try(var encoder = new QOIStreamEncoder(output, 3, 1, QOISpecification.RGB, QOISpecification.sRGB)) {
+            encoder.write(new int[0]);
+            encoder.write(pixels, 0, 1);
+            encoder.write(pixels, 1, 0);
+            encoder.write(pixels, 1, 2);
+            encoder.write(pixels, 3, 0);
+        }
+        assertArrayEquals(QOIEncoder.qoiFile(pixels, 3, 1, QOISpecification.RGB, QOISpecification.sRGB), output.toByteArray());
+    }
+
+    @Test
+    void flushReachesTheOutput() throws IOException {
+        var output = new Output();
+        var encoder = new QOIStreamEncoder(output, 2, 1, QOISpecification.RGBA, QOISpecification.sRGB);
+        encoder.write(new int[]{0x80_10_20_30});
+        encoder.flush();
+        assertEquals(1, output.flushes);
+        assertEquals(QOISpecification.HEADER_SIZE + 5, output.size());
+        encoder.write(new int[]{0x80_10_20_30});
+        encoder.close();
+        assertTrue(output.closed);
+    }
+
+    @Test
+    void incompleteImageClosesTheOutput() throws IOException {
+        var output = new Output();
+        var encoder = new QOIStreamEncoder(output, 4, 4, QOISpecification.RGB, QOISpecification.sRGB);
+        encoder.write(new int[]{0xFF_10_20_30, 0xFF_10_20_31, 0xFF_10_20_31});
+        assertThrows(IOException.class, encoder::close);
+        assertTrue(output.closed);
+        // The chunks are written, run included, but not the "End Of File"
+        assertEquals(QOISpecification.HEADER_SIZE + 4 + 1 + 1, output.size());
+        encoder.close();
+    }
+
+    // Output remembering the calls to flush and close
+    private static final class Output extends ByteArrayOutputStream {
+
+        private int flushes = 0;
+        private boolean closed = false;
+
+        @Override
+        public void flush(){
+            ++flushes;
+        }
+
+        @Override
+        public void close(){
+            closed = true;
+        }
+    }
+
+}
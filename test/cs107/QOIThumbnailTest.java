@@ -0,0 +1,62 @@
+package cs107;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.function.IntUnaryOperator;
+
+import static cs107.References.png;
+import static cs107.References.qoi;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Thumbnails must be the alpha weighted box filter of the full image.
+ */
+class QOIThumbnailTest {
+
+    @ParameterizedTest
+    @MethodSource("cs107.References#sample")
+    void thumbnailIsBoxFilter(String name){
+        var data = png(name).data();
+        var content = qoi(name);
+        int width = data[0].length;
+        int height = data.length;
+
+        assertArrayEquals(boxFilter(data, width, height, x -> x, y -> y), QOIThumbnail.decode(content, 1).array());
+
+        var thumbnail = QOIThumbnail.decode(content, 3);
+        assertArrayEquals(boxFilter(data, (width + 2) / 3, (height + 2) / 3, x -> x / 3, y -> y / 3), thumbnail.array());
+
+        int tw = Math.max(1, width / 5);
+        int th = Math.max(1, height / 2);
+        thumbnail = QOIThumbnail.decode(content, tw, th);
+        assertArrayEquals(boxFilter(data, tw, th, x -> x * tw / width, y -> y * th / height), thumbnail.array());
+    }
+
+    // Alpha weighted average of the pixels mapped to each pixel of the thumbnail
+    private static int[] boxFilter(int[][] data, int width, int height, IntUnaryOperator columns, IntUnaryOperator rows){
+        var sums = new long[width * height][5];
+        for(int y = 0; y < data.length; ++y) {
+            for(int x = 0; x < data[y].length; ++x) {
+                var sum = sums[rows.applyAsInt(y) * width + columns.applyAsInt(x)];
+                int pixel = data[y][x];
+                int a = pixel >>> 24;
+                sum[0] += a;
+                sum[1] += ((pixel >>> 16) & 0xFF) * a;
+                sum[2] += ((pixel >>> 8) & 0xFF) * a;
+                sum[3] += (pixel & 0xFF) * a;
+                sum[4] += 1;
+            }
+        }
+        var pixels = new int[width * height];
+        for(int i = 0; i < pixels.length; ++i) {
+            var sum = sums[i];
+            if(sum[0] > 0) {
+                pixels[i] = (int) ((sum[0] + sum[4] / 2) / sum[4]) << 24 | (int) ((sum[1] + sum[0] / 2) / sum[0]) << 16
+                        | (int) ((sum[2] + sum[0] / 2) / sum[0]) << 8 | (int) ((sum[3] + sum[0] / 2) / sum[0]);
+            }
+        }
+        return pixels;
+    }
+
+}
@@ -0,0 +1,61 @@
+package cs107;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Images of the "references/" folder: each "PNG" comes with the "QOI" file
+ * produced by the reference encoder.
+ */
+final class References {
+
+    static final String FOLDER = "references";
+
+    // Hide default constructor
+    private References(){}
+
+    /**
+     * Every reference of the folder
+     * @return (Stream<String>) - Names of the references, without extension
+     */
+    static Stream<String> all(){
+        var files = new File(FOLDER).list((dir, name) -> name.endsWith(".png")
+                && new File(dir, name.replace(".png", ".qoi")).exists());
+        assert files != null;
+        Arrays.sort(files);
+        return Arrays.stream(files).map(name -> name.substring(0, name.length() - ".png".length()));
+    }
+
+    /**
+     * A few references covering every chunk, runs, transparency and a photograph,
+     * for the tests that don't need the whole folder
+     * @return (Stream<String>) - Names of the references, without extension
+     */
+    static Stream<String> sample(){
+        return Stream.of("dice", "qoi_op_run", "testcard_rgba", "kodim23");
+    }
+
+    static Path path(String name, String extension){
+        return Path.of(FOLDER, name + extension);
+    }
+
+    static Helper.Image png(String name){
+        return Helper.readImage(path(name, ".png").toString());
+    }
+
+    static byte[] qoi(String name){
+        return Helper.read(path(name, ".qoi").toString());
+    }
+
+    static int[] flatten(int[][] data){
+        var width = data[0].length;
+        var pixels = new int[data.length * width];
+        for(int i = 0; i < data.length; ++i) {
+            System.arraycopy(data[i], 0, pixels, i * width, width);
+        }
+        return pixels;
+    }
+
+}